@@ -0,0 +1 @@
+java -classpath ".;.\libs\*" cz.zettel.algorithms.Batch %*
\ No newline at end of file
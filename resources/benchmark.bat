@@ -0,0 +1 @@
+java -classpath ".;.\libs\*" cz.zettel.algorithms.benchmark.Benchmarks %*
\ No newline at end of file
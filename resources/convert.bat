@@ -0,0 +1 @@
+java -classpath ".;.\libs\*" cz.zettel.algorithms.Convert %*
\ No newline at end of file
@@ -0,0 +1,58 @@
+package cz.zettel.algorithms;
+
+import cz.zettel.algorithms.logic.AbstractSearch;
+import cz.zettel.algorithms.logic.BatchSolver;
+import cz.zettel.algorithms.logic.FullSearch;
+import cz.zettel.algorithms.logic.SolutionCache;
+import cz.zettel.algorithms.logic.SolverPool;
+import cz.zettel.algorithms.presenter.ConsolePresenter;
+import cz.zettel.algorithms.presenter.Presentable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+
+/**
+ * Solves a file of matrices, one matrix of 81 characters per line, and writes the solutions to another file.
+ * Usage: {@code Batch <input file> <output file> [threads]}
+ * <p>
+ * Matrices equivalent to the already solved ones are answered from the {@link SolutionCache}.
+ */
+public class Batch {
+
+    private static final int WINDOW_SIZE_PER_THREAD = 256;
+    private static final int CACHE_CAPACITY = 65536;
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+
+        System.setProperty("logback.configurationFile", "logback.xml");
+
+        Presentable presenter = new ConsolePresenter();
+        if (args.length < 2) {
+            presenter.print("Usage: Batch <input file> <output file> [threads]");
+            return;
+        }
+        final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        final SolutionCache solutionCache = new SolutionCache(CACHE_CAPACITY);
+        final BatchSolver batchSolver = new BatchSolver(threads, threads * WINDOW_SIZE_PER_THREAD,
+                new SolverPool(new IntFunction<AbstractSearch>() {
+                    @Override
+                    public AbstractSearch apply(int length) {
+                        return new FullSearch(length, true, false, 1);
+                    }
+                }), solutionCache);
+        try (BufferedReader input = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.US_ASCII);
+             BufferedWriter output = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.US_ASCII)) {
+            presenter.print(batchSolver.solve(input, output).toString());
+            presenter.print("Solution cache: " + solutionCache);
+        } finally {
+            batchSolver.shutdown();
+        }
+    }
+}
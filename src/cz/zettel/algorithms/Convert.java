@@ -0,0 +1,121 @@
+package cz.zettel.algorithms;
+
+import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.io.PuzzleBinaryFormat;
+import cz.zettel.algorithms.io.PuzzleBinaryReader;
+import cz.zettel.algorithms.io.PuzzleBinaryWriter;
+import cz.zettel.algorithms.io.PuzzleLineFormat;
+import cz.zettel.algorithms.presenter.ConsolePresenter;
+import cz.zettel.algorithms.presenter.Presentable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts a file of matrices in the one-line format of {@link PuzzleLineFormat} to the binary format
+ * of {@link PuzzleBinaryFormat} and back. The binary files end with {@value PuzzleBinaryFormat#FILE_EXTENSION}.
+ * Usage: {@code Convert <input file> <output file> [solutions file]}
+ * <p>
+ * The optional file of the solutions has one solution per line in the order of the matrices. It is stored together
+ * with the matrices when converting to the binary format, and written when converting a binary file holding
+ * the solutions.
+ */
+public class Convert {
+
+    private static final String COMMENT_PREFIX = "#";
+
+    public static void main(String[] args) throws IOException {
+
+        System.setProperty("logback.configurationFile", "logback.xml");
+
+        Presentable presenter = new ConsolePresenter();
+        if (args.length < 2) {
+            presenter.print("Usage: Convert <input file> <output file> [solutions file]");
+            return;
+        }
+        final Path input = Paths.get(args[0]);
+        final Path output = Paths.get(args[1]);
+        final Path solutions = args.length > 2 ? Paths.get(args[2]) : null;
+        final long startTime = System.nanoTime();
+        final long count = args[0].endsWith(PuzzleBinaryFormat.FILE_EXTENSION)
+                ? toLines(input, output, solutions)
+                : toBinary(input, output, solutions);
+        presenter.print(String.format("%d matrices converted in %dms", count,
+                (System.nanoTime() - startTime) / 1000000));
+    }
+
+    private static long toBinary(final Path input, final Path output, final Path solutions) throws IOException {
+        PuzzleBinaryWriter writer = null;
+        try (BufferedReader matrixReader = Files.newBufferedReader(input, StandardCharsets.US_ASCII);
+             BufferedReader solutionReader = solutions == null ? null
+                     : Files.newBufferedReader(solutions, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = readLine(matrixReader)) != null) {
+                final Matrix matrix = PuzzleLineFormat.parse(line);
+                if (writer == null) {
+                    writer = new PuzzleBinaryWriter(output, matrix.getLength(), solutionReader != null);
+                }
+                if (solutionReader == null) {
+                    writer.write(matrix);
+                } else {
+                    final String solution = readLine(solutionReader);
+                    if (solution == null) {
+                        throw new IOException("Missing solution of matrix " + (writer.getRecordCount() + 1));
+                    }
+                    writer.write(matrix, PuzzleLineFormat.parse(solution));
+                }
+            }
+            if (writer == null) {
+                throw new IOException("No matrix in " + input);
+            }
+            return writer.getRecordCount();
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static long toLines(final Path input, final Path output, final Path solutions) throws IOException {
+        final PuzzleBinaryReader reader = new PuzzleBinaryReader(input);
+        if (solutions != null && !reader.hasSolutions()) {
+            throw new IOException("File " + input + " does not hold the solutions");
+        }
+        final Matrix matrix = reader.newMatrix();
+        final StringBuilder line = new StringBuilder(matrix.getCellsCount());
+        try (BufferedWriter matrixWriter = Files.newBufferedWriter(output, StandardCharsets.US_ASCII);
+             BufferedWriter solutionWriter = solutions == null ? null
+                     : Files.newBufferedWriter(solutions, StandardCharsets.US_ASCII)) {
+            for (long i = 0; i < reader.getRecordCount(); i++) {
+                line.setLength(0);
+                matrixWriter.append(PuzzleLineFormat.format(reader.readMatrix(i, matrix), line))
+                        .append(System.lineSeparator());
+                if (solutionWriter != null) {
+                    line.setLength(0);
+                    solutionWriter.append(PuzzleLineFormat.format(reader.readSolution(i, matrix), line))
+                            .append(System.lineSeparator());
+                }
+            }
+        }
+        return reader.getRecordCount();
+    }
+
+    /**
+     * @return Next line which is not empty nor a comment, {@code null} at the end of the file.
+     */
+    private static String readLine(final BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith(COMMENT_PREFIX)) {
+                return line;
+            }
+        }
+        return null;
+    }
+}
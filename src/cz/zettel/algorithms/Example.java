@@ -1,15 +1,22 @@
 package cz.zettel.algorithms;
 
 import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.logic.AnnealingSearch;
+import cz.zettel.algorithms.logic.DancingLinksSearch;
 import cz.zettel.algorithms.logic.ExecutorServiceWrapper;
 import cz.zettel.algorithms.logic.FullSearch;
 import cz.zettel.algorithms.logic.GeneticSearch;
+import cz.zettel.algorithms.logic.IslandSearch;
+import cz.zettel.algorithms.logic.LogicComparable;
+import cz.zettel.algorithms.logic.MrvSearch;
+import cz.zettel.algorithms.logic.PortfolioSolver;
 import cz.zettel.algorithms.presenter.Presentable;
 import cz.zettel.algorithms.presenter.ConsolePresenter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 
 public class Example {
@@ -74,18 +81,91 @@ public class Example {
         fullSearch = new FullSearch(matrix3);
         presenter.printComparison(fullSearch);
 
+        // example3 using full search with bitmask constraint checks
+        fullSearch = new FullSearch(matrix3, true);
+        presenter.printComparison(fullSearch);
+
+        // example3 using full search after constraint propagation
+        fullSearch = new FullSearch(matrix3, true, true);
+        presenter.printComparison(fullSearch);
+
+        // example3 has more solutions, count up to 2 of them to check uniqueness
+        fullSearch = new FullSearch(matrix3, true, true, 2);
+        log.info("Example3 has {} solution(s) at least, unique = {}", fullSearch.getSolutionCount(), fullSearch.isUnique());
+
+        // example3 using back-tracking with minimum remaining values heuristic
+        presenter.printComparison(new MrvSearch(matrix3));
+
+        // example3 using exact cover search with Dancing Links
+        presenter.printComparison(new DancingLinksSearch(matrix3));
+
+        // example2 using simulated annealing
+        presenter.printComparison(new AnnealingSearch(matrix2));
+
         // example1 using genetic search
         geneticSearch = new GeneticSearch(matrix1, 10000, 0.2F);
         presenter.printComparison(geneticSearch);
 
+        // example1 using genetic search with squares encoded as permutations
+        geneticSearch = new GeneticSearch.Builder(matrix1)
+                .populationSize(10000)
+                .elitismRatio(0.2F)
+                .encoding(GeneticSearch.Encoding.SQUARE_PERMUTATION)
+                .build();
+        presenter.printComparison(geneticSearch);
+
+        // example2 using memetic search, the best 5% of each generation are improved by the local search
+        geneticSearch = new GeneticSearch.Builder(matrix2)
+                .populationSize(10000)
+                .elitismRatio(0.2F)
+                .localSearchRatio(0.05F)
+                .build();
+        presenter.printComparison(geneticSearch);
+
         // example2 using genetic search
         geneticSearch = new GeneticSearch(matrix2, 100000, 0.2F);
         presenter.printComparison(geneticSearch);
 
+        // example2 using genetic search computing each generation by all the processors
+        geneticSearch = new GeneticSearch.Builder(matrix2)
+                .populationSize(100000)
+                .elitismRatio(0.2F)
+                .parallelism(Runtime.getRuntime().availableProcessors())
+                .build();
+        presenter.printComparison(geneticSearch);
+
         // example2 using genetic search in parallel threads
         geneticSearchExecutor = new ExecutorServiceWrapper(3);
         geneticSearchExecutor.submitGeneticCallables(matrix2, 100000, 0.2F);
         presenter.printComparison(geneticSearchExecutor.monitorThreadsAndGetResult());
 
+        // example3 using simulated annealing in parallel threads
+        geneticSearchExecutor.submitAnnealingCallables(matrix3);
+        presenter.printComparison(geneticSearchExecutor.monitorThreadsAndGetResult());
+        geneticSearchExecutor.shutdown();
+
+        // all examples using portfolio of full search and genetic search racing for the solution
+        final PortfolioSolver portfolioSolver = new PortfolioSolver(2)
+                .addStrategy("FullSearch", new Function<Matrix, LogicComparable>() {
+                    @Override
+                    public LogicComparable apply(Matrix matrix) {
+                        return new FullSearch(matrix, true);
+                    }
+                })
+                .addStrategy("GeneticSearch", new Function<Matrix, LogicComparable>() {
+                    @Override
+                    public LogicComparable apply(Matrix matrix) {
+                        return new GeneticSearch(matrix, 10000, 0.2F);
+                    }
+                });
+        presenter.printComparison(portfolioSolver.solve(matrix1));
+        presenter.printComparison(portfolioSolver.solve(matrix2));
+        presenter.printComparison(portfolioSolver.solve(matrix3));
+        presenter.print("Portfolio statistics: " + portfolioSolver.getStatistics());
+        portfolioSolver.shutdown();
+
+        // example2 using island model of genetic search, 4 islands exchanging 5 best individuals every 10 generations
+        presenter.printComparison(new IslandSearch(matrix2, 4, 25000, 0.2F, 10, 5));
+
     }
 }
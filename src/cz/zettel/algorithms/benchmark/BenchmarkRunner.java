@@ -0,0 +1,174 @@
+package cz.zettel.algorithms.benchmark;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.presenter.Presentable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.regex.Pattern;
+
+/**
+ * This class runs the benchmarks in the way of JMH: each benchmark is first run for several warm-up iterations
+ * to let the JIT compile it, then for several measured iterations. Each iteration calls the benchmark repeatedly
+ * until the iteration time elapses (at least once). Throughput, average time and bytes allocated per operation
+ * by the benchmark thread are reported. Allocation is measured by the HotSpot thread allocation counter, so it does not
+ * include the allocations of the threads started by the benchmark.
+ */
+class BenchmarkRunner {
+
+    /**
+     * Operation measured by the runner.
+     */
+    interface Benchmark {
+        /**
+         * Runs one operation.
+         *
+         * @return any value computed from the result of the operation, it is consumed so the JIT cannot remove
+         * the operation
+         */
+        int run();
+    }
+
+    /**
+     * Counter of the operations which found the solution, for the benchmarks whose operation can end without it,
+     * e.g. a search stopped by its budget. Only the measured iterations are counted.
+     */
+    static final class SolveRate {
+        private long mSolved, mCount;
+
+        /**
+         * Records one operation.
+         *
+         * @param solved {@code true} if the operation found the solution
+         * @return 0 if the operation found the solution, 1 otherwise, to be returned by the benchmark
+         */
+        int record(final boolean solved) {
+            mCount++;
+            if (solved) {
+                mSolved++;
+                return 0;
+            }
+            return 1;
+        }
+
+        private void reset() {
+            mSolved = 0;
+            mCount = 0;
+        }
+    }
+
+    private final int mWarmupIterations;
+    private final int mMeasurementIterations;
+    private final long mIterationNanos;
+    private final Pattern mFilter;
+    @NotNull
+    private final Presentable mPresenter;
+    private final com.sun.management.ThreadMXBean mThreadMXBean;
+    /**
+     * Results of the operations are consumed here.
+     */
+    private volatile int mSink;
+
+    /**
+     * Constructor.
+     *
+     * @param warmupIterations      number of iterations before the measurement
+     * @param measurementIterations number of measured iterations
+     * @param iterationMillis       minimal duration of one iteration
+     * @param filter                regular expression, only the benchmarks whose names contain it are run
+     * @param presenter             presenter of the results
+     */
+    BenchmarkRunner(final int warmupIterations,
+                    final int measurementIterations,
+                    final long iterationMillis,
+                    @NotNull final String filter,
+                    @NotNull final Presentable presenter) {
+        mWarmupIterations = warmupIterations;
+        mMeasurementIterations = measurementIterations;
+        mIterationNanos = iterationMillis * 1000000;
+        mFilter = Pattern.compile(filter);
+        mPresenter = presenter;
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()) {
+            mThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            mThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            mThreadMXBean = null;
+        }
+    }
+
+    /**
+     * Warms up and measures the benchmark, if its name matches the filter.
+     *
+     * @param name      name of the benchmark
+     * @param benchmark operation to be measured
+     */
+    void run(@NotNull final String name, @NotNull final Benchmark benchmark) {
+        run(name, benchmark, null);
+    }
+
+    /**
+     * Warms up and measures the benchmark, if its name matches the filter. The share of the measured operations
+     * which found the solution is reported too.
+     *
+     * @param name      name of the benchmark
+     * @param benchmark operation to be measured, it records its outcome to the solve rate
+     * @param solveRate counter of the solved operations, {@code null} if each operation finds the solution
+     */
+    void run(@NotNull final String name, @NotNull final Benchmark benchmark, final SolveRate solveRate) {
+        if (!mFilter.matcher(name).find()) {
+            return;
+        }
+        for (int i = 0; i < mWarmupIterations; i++) {
+            runIteration(benchmark);
+        }
+        if (solveRate != null) {
+            solveRate.reset();
+        }
+        long operations = 0, nanos = 0, allocatedBytes = 0;
+        long[] iteration;
+        for (int i = 0; i < mMeasurementIterations; i++) {
+            iteration = runIteration(benchmark);
+            operations += iteration[0];
+            nanos += iteration[1];
+            allocatedBytes += iteration[2];
+        }
+        final double seconds = nanos / 1e9;
+        mPresenter.print(String.format("%-40s %14.3f ops/s %14.3f us/op %14s B/op %12s MB/s%s",
+                name, operations / seconds, nanos / 1e3 / operations,
+                mThreadMXBean == null ? "n/a" : String.format("%.1f", (double) allocatedBytes / operations),
+                mThreadMXBean == null ? "n/a" : String.format("%.1f", allocatedBytes / seconds / (1024 * 1024)),
+                solveRate == null ? "" : String.format(" %7.1f%% solved (%d/%d)",
+                        100.0 * solveRate.mSolved / solveRate.mCount, solveRate.mSolved, solveRate.mCount)));
+    }
+
+    /**
+     * Prints the header of the result table.
+     */
+    void printHeader() {
+        mPresenter.print(String.format("%-40s %20s %20s %19s %17s",
+                "Benchmark", "Throughput", "Average time", "Allocation", "Alloc rate"));
+    }
+
+    /**
+     * Runs the operation until the iteration time elapses.
+     *
+     * @return number of operations, elapsed nanoseconds and allocated bytes
+     */
+    private long[] runIteration(final Benchmark benchmark) {
+        final long threadId = Thread.currentThread().getId();
+        final long startBytes = mThreadMXBean == null ? 0 : mThreadMXBean.getThreadAllocatedBytes(threadId);
+        final long startTime = System.nanoTime();
+        long operations = 0, elapsed;
+        int sink = 0;
+        do {
+            sink += benchmark.run();
+            operations++;
+            elapsed = System.nanoTime() - startTime;
+        } while (elapsed < mIterationNanos);
+        final long allocatedBytes = mThreadMXBean == null ? 0 : mThreadMXBean.getThreadAllocatedBytes(threadId) - startBytes;
+        mSink = sink;
+        return new long[]{operations, elapsed, allocatedBytes};
+    }
+}
@@ -0,0 +1,225 @@
+package cz.zettel.algorithms.benchmark;
+
+import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.logic.AbstractSearch;
+import cz.zettel.algorithms.logic.AnnealingSearch;
+import cz.zettel.algorithms.logic.CanonicalForm;
+import cz.zettel.algorithms.logic.DancingLinksSearch;
+import cz.zettel.algorithms.logic.FullSearch;
+import cz.zettel.algorithms.logic.GeneticSearch;
+import cz.zettel.algorithms.logic.LogicComparable;
+import cz.zettel.algorithms.logic.MrvSearch;
+import cz.zettel.algorithms.logic.SolutionCache;
+import cz.zettel.algorithms.logic.SolveBudget;
+import cz.zettel.algorithms.logic.SolveStatus;
+import cz.zettel.algorithms.presenter.ConsolePresenter;
+import cz.zettel.algorithms.presenter.Presentable;
+
+import java.util.function.Function;
+
+/**
+ * Benchmarks of the {@link Matrix} primitives and of the search algorithms.
+ * Usage: {@code Benchmarks [filter] [warm-up iterations] [measurement iterations] [iteration milliseconds]},
+ * where the filter is a regular expression selecting the benchmarks by name, e.g. {@code Matrix} or {@code FullSearch}.
+ * <p>
+ * Genetic search benchmarks run only with the easy and medium matrices, the hard ones take minutes per solution.
+ * Each genetic search is bounded by {@value #GENETIC_BUDGET_MILLIS} ms, its solve rate is reported with the time.
+ * <p>
+ * Scaling benchmarks run the searches with generated matrices from 4&times;4 to 25&times;25 with the same ratio
+ * of the empty cells, e.g. {@code FullSearch.16x16}. All the searches get the same matrix of each size, the genetic
+ * search is bounded by its budget and reports how often it solved the matrix.
+ */
+public class Benchmarks {
+
+    private static final int GENETIC_POPULATION_SIZE = 10000;
+    private static final float GENETIC_ELITISM_RATIO = 0.2F;
+    private static final float GENETIC_LOCAL_SEARCH_RATIO = 0.05F;
+    /**
+     * Time limit of one genetic search, medium matrices are not always solved within it.
+     */
+    private static final long GENETIC_BUDGET_MILLIS = 5000;
+
+    private static final int MAX_SCALING_SQUARE_LENGTH = 5;
+    private static final float SCALING_EMPTY_RATIO = 0.4F;
+    private static final int SCALING_GENETIC_POPULATION_SIZE = 1000;
+    private static final long SCALING_SEED = 42;
+
+    public static void main(String[] args) {
+
+        System.setProperty("logback.configurationFile", "logback.xml");
+
+        final String filter = args.length > 0 ? args[0] : "";
+        final int warmupIterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final int measurementIterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        final long iterationMillis = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+
+        final Presentable presenter = new ConsolePresenter();
+        final BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, measurementIterations, iterationMillis,
+                filter, presenter);
+        runner.printHeader();
+        runMatrixBenchmarks(runner);
+        runFullSearchBenchmarks(runner, "easy", Puzzles.parse(Puzzles.EASY));
+        runFullSearchBenchmarks(runner, "medium", Puzzles.parse(Puzzles.MEDIUM));
+        runFullSearchBenchmarks(runner, "hard", Puzzles.parse(Puzzles.HARD));
+        runFullSearchBenchmarks(runner, "hardest", Puzzles.parse(Puzzles.HARDEST));
+        runFullSearchBenchmarks(runner, "adversarial", Puzzles.parse(Puzzles.ADVERSARIAL));
+        runSolutionCacheBenchmarks(runner, "easy", Puzzles.parse(Puzzles.EASY));
+        runSolutionCacheBenchmarks(runner, "hardest", Puzzles.parse(Puzzles.HARDEST));
+        runGeneticSearchBenchmark(runner, "easy", Puzzles.parse(Puzzles.EASY), GENETIC_POPULATION_SIZE);
+        runGeneticSearchBenchmark(runner, "medium", Puzzles.parse(Puzzles.MEDIUM), GENETIC_POPULATION_SIZE);
+        runAnnealingBenchmark(runner, "easy", Puzzles.parse(Puzzles.EASY));
+        runAnnealingBenchmark(runner, "medium", Puzzles.parse(Puzzles.MEDIUM));
+        runAnnealingBenchmark(runner, "hard", Puzzles.parse(Puzzles.HARD));
+        for (int squareLength = 2; squareLength <= MAX_SCALING_SQUARE_LENGTH; squareLength++) {
+            final String size = squareLength * squareLength + "x" + squareLength * squareLength;
+            final Matrix matrix = Puzzles.generate(squareLength, SCALING_EMPTY_RATIO, SCALING_SEED);
+            runFullSearchBenchmarks(runner, size, matrix);
+            runGeneticSearchBenchmark(runner, size, matrix, SCALING_GENETIC_POPULATION_SIZE);
+            runAnnealingBenchmark(runner, size, matrix);
+        }
+    }
+
+    private static void runMatrixBenchmarks(final BenchmarkRunner runner) {
+        // partially filled matrix, as seen by the search algorithms
+        final Matrix matrix = Puzzles.parse(Puzzles.MEDIUM);
+        final int[] cell = new int[1];
+
+        runner.run("Matrix.isConstraintViolated", new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                cell[0] = (cell[0] + 1) % Matrix.CELLS_COUNT;
+                return matrix.isConstraintViolated(cell[0] / Matrix.MATRIX_LENGTH, cell[0] % Matrix.MATRIX_LENGTH) ? 1 : 0;
+            }
+        });
+        runner.run("Matrix.getTotalError", new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return matrix.getTotalError();
+            }
+        });
+        runner.run("Matrix.copy", new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return new Matrix(matrix).getValue(0, 2);
+            }
+        });
+        runner.run("Matrix.getColumn", new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                cell[0] = (cell[0] + 1) % Matrix.MATRIX_LENGTH;
+                return matrix.getColumn(cell[0])[0];
+            }
+        });
+        runner.run("Matrix.setValue", new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                cell[0] = (cell[0] + 1) % Matrix.MATRIX_LENGTH;
+                matrix.setValue(0, 0, cell[0]);
+                return matrix.getTotalError();
+            }
+        });
+    }
+
+    private static void runFullSearchBenchmarks(final BenchmarkRunner runner, final String level, final Matrix matrix) {
+        runner.run("FullSearch." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return new FullSearch(matrix).getCalculatedMatrix().getTotalError();
+            }
+        });
+        runner.run("FullSearch.bitmask." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return new FullSearch(matrix, true).getCalculatedMatrix().getTotalError();
+            }
+        });
+        final AbstractSearch reusedFullSearch = new FullSearch(matrix.getLength(), true, false, 1);
+        runner.run("FullSearch.bitmask.reused." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return reusedFullSearch.solve(matrix).getCalculatedMatrix().getTotalError();
+            }
+        });
+        runner.run("MrvSearch." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return new MrvSearch(matrix).getCalculatedMatrix().getTotalError();
+            }
+        });
+        runner.run("DancingLinksSearch." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return new DancingLinksSearch(matrix).getCalculatedMatrix().getTotalError();
+            }
+        });
+        final AbstractSearch reusedDancingLinksSearch = new DancingLinksSearch(matrix.getLength(), false);
+        runner.run("DancingLinksSearch.reused." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return reusedDancingLinksSearch.solve(matrix).getCalculatedMatrix().getTotalError();
+            }
+        });
+    }
+
+    private static void runSolutionCacheBenchmarks(final BenchmarkRunner runner, final String level,
+                                                   final Matrix matrix) {
+        runner.run("CanonicalForm." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return CanonicalForm.of(matrix).getKey().length();
+            }
+        });
+        final SolutionCache solutionCache = new SolutionCache(1);
+        final Function<Matrix, LogicComparable> strategy = new Function<Matrix, LogicComparable>() {
+            @Override
+            public LogicComparable apply(Matrix matrix) {
+                return new DancingLinksSearch(matrix);
+            }
+        };
+        solutionCache.solve(matrix, strategy);
+        runner.run("SolutionCache.hit." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return solutionCache.solve(matrix, strategy).getCalculatedMatrix().getTotalError();
+            }
+        });
+    }
+
+    private static void runGeneticSearchBenchmark(final BenchmarkRunner runner, final String level, final Matrix matrix,
+                                                  final int populationSize) {
+        final SolveBudget budget = SolveBudget.ofMillis(GENETIC_BUDGET_MILLIS);
+        runGeneticSearchBenchmark(runner, "GeneticSearch." + level, matrix, budget, new GeneticSearch.Builder(matrix)
+                .populationSize(populationSize)
+                .elitismRatio(GENETIC_ELITISM_RATIO));
+        runGeneticSearchBenchmark(runner, "GeneticSearch.square." + level, matrix, budget,
+                new GeneticSearch.Builder(matrix)
+                        .populationSize(populationSize)
+                        .elitismRatio(GENETIC_ELITISM_RATIO)
+                        .encoding(GeneticSearch.Encoding.SQUARE_PERMUTATION));
+        runGeneticSearchBenchmark(runner, "GeneticSearch.memetic." + level, matrix, budget,
+                new GeneticSearch.Builder(matrix)
+                        .populationSize(populationSize)
+                        .elitismRatio(GENETIC_ELITISM_RATIO)
+                        .localSearchRatio(GENETIC_LOCAL_SEARCH_RATIO));
+    }
+
+    private static void runGeneticSearchBenchmark(final BenchmarkRunner runner, final String name, final Matrix matrix,
+                                                  final SolveBudget budget, final GeneticSearch.Builder builder) {
+        final BenchmarkRunner.SolveRate solveRate = new BenchmarkRunner.SolveRate();
+        runner.run(name, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return solveRate.record(builder.buildSolver().solve(matrix, budget).getStatus() == SolveStatus.SOLVED);
+            }
+        }, solveRate);
+    }
+
+    private static void runAnnealingBenchmark(final BenchmarkRunner runner, final String level, final Matrix matrix) {
+        runner.run("AnnealingSearch." + level, new BenchmarkRunner.Benchmark() {
+            @Override
+            public int run() {
+                return new AnnealingSearch(matrix).getCalculatedMatrix().getTotalError();
+            }
+        });
+    }
+}
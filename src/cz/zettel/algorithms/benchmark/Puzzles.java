@@ -0,0 +1,108 @@
+package cz.zettel.algorithms.benchmark;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.io.PuzzleLineFormat;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fixed set of matrices used by the benchmarks, from easy to hard. The first three are the matrices of the Example.
+ * Matrices of other sizes are generated from a fixed seed, so each run benchmarks the same matrices.
+ */
+final class Puzzles {
+
+    /**
+     * example1 of the Example.
+     */
+    static final String EASY = "013800405024605000087000930490306000001000500000701093069000740000207680102008350";
+    /**
+     * example2 of the Example.
+     */
+    static final String MEDIUM = "002000041000082070000040009200079300010000080006810004100090000060430000850000400";
+    /**
+     * example3 of the Example.
+     */
+    static final String HARD = "000300000070000000009085063900006700000040030010820009005000090000061000100000004";
+    /**
+     * Matrix published by Arto Inkala as the hardest one for human solvers.
+     */
+    static final String HARDEST = "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+    /**
+     * Matrix whose first row is built against back-tracking in row-major order with values tried from 1 to 9.
+     */
+    static final String ADVERSARIAL = "000000000000003085001020000000507000004000100090000000500000073002010000000040009";
+
+    private Puzzles() {
+    }
+
+    @NotNull
+    static Matrix parse(@NotNull final String puzzle) {
+        return PuzzleLineFormat.parse(puzzle);
+    }
+
+    /**
+     * Generates a matrix with at least one solution. The solution is made from the pattern shifting each row
+     * of a band by one and each band by the square length, then the values are relabeled and the rows and columns
+     * are shuffled inside their bands and stacks, finally the cells are emptied at random.
+     *
+     * @param squareLength length of the squares, e.g. 4 for 16&times;16 matrix
+     * @param emptyRatio   ratio of the empty cells
+     * @param seed         seed of the random generator
+     * @return generated matrix
+     */
+    @NotNull
+    static Matrix generate(final int squareLength, final float emptyRatio, final long seed) {
+        final int length = squareLength * squareLength;
+        final SplittableRandom random = new SplittableRandom(seed);
+        final int[] values = shuffle(length, random);
+        final int[] rows = shuffleInSquares(squareLength, random);
+        final int[] columns = shuffleInSquares(squareLength, random);
+        final int[][] cells = new int[length][length];
+        int row, column;
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                if (random.nextDouble() >= emptyRatio) {
+                    row = rows[i];
+                    column = columns[j];
+                    cells[i][j] = values[(row % squareLength * squareLength + row / squareLength + column) % length] + 1;
+                }
+            }
+        }
+        return new Matrix(cells);
+    }
+
+    /**
+     * @return Random permutation of the numbers from 0 to length - 1.
+     */
+    private static int[] shuffle(final int length, final SplittableRandom random) {
+        final int[] permutation = new int[length];
+        for (int i = 0; i < length; i++) {
+            permutation[i] = i;
+        }
+        int j, swap;
+        for (int i = length - 1; i > 0; i--) {
+            j = random.nextInt(i + 1);
+            swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+        return permutation;
+    }
+
+    /**
+     * @return Random permutation of the rows (or columns) which keeps each of them in its band (or stack).
+     */
+    private static int[] shuffleInSquares(final int squareLength, final SplittableRandom random) {
+        final int[] bands = shuffle(squareLength, random);
+        final int[] permutation = new int[squareLength * squareLength];
+        int[] lines;
+        for (int band = 0; band < squareLength; band++) {
+            lines = shuffle(squareLength, random);
+            for (int line = 0; line < squareLength; line++) {
+                permutation[band * squareLength + line] = bands[band] * squareLength + lines[line];
+            }
+        }
+        return permutation;
+    }
+}
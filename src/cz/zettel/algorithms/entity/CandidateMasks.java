@@ -0,0 +1,135 @@
+package cz.zettel.algorithms.entity;
+
+import com.sun.istack.internal.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps track of the values already used in each row, column and square of a {@link Matrix}.
+ * Every unit is represented by a bitmask where bit {@code value - 1} is set when the value is present in the unit,
+ * so the check whether a value can be placed into a cell is a single bitwise operation without any allocation.
+ * The masks are {@code long}, so they hold all the values of any matrix up to {@link Matrix#MAX_LENGTH}.
+ * The masks have to be updated by {@link #place(int, int, int)} and {@link #remove(int, int, int)} whenever
+ * a value in the tracked matrix changes.
+ */
+public class CandidateMasks implements MatrixConstants {
+
+    @NotNull
+    private final Matrix mMatrix;
+    private final long mAllValuesMask;
+    @NotNull
+    private final long[] mRowMasks;
+    @NotNull
+    private final long[] mColumnMasks;
+    @NotNull
+    private final long[] mSquareMasks;
+
+    /**
+     * Default constructor. Masks are initialized from all the non-empty cells of the matrix.
+     *
+     * @param matrix Matrix to be tracked.
+     */
+    public CandidateMasks(@NotNull final Matrix matrix) {
+        final int length = matrix.getLength();
+        mMatrix = matrix;
+        mAllValuesMask = getAllValuesMask(length);
+        mRowMasks = new long[length];
+        mColumnMasks = new long[length];
+        mSquareMasks = new long[length];
+        reset();
+    }
+
+    /**
+     * Initializes the masks again from all the non-empty cells of the tracked matrix, e.g. after the whole matrix
+     * was overwritten.
+     */
+    public void reset() {
+        final int length = mRowMasks.length;
+        Arrays.fill(mRowMasks, 0);
+        Arrays.fill(mColumnMasks, 0);
+        Arrays.fill(mSquareMasks, 0);
+        int value;
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                value = mMatrix.getValue(i, j);
+                if (value != EMPTY_VALUE) {
+                    place(i, j, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns mask with the bits of all the values of a matrix set.
+     *
+     * @param length length of the matrix
+     * @return Bitmask of all the values.
+     */
+    @NotNull
+    public static long getAllValuesMask(final int length) {
+        return length == Long.SIZE ? -1L : (1L << length) - 1;
+    }
+
+    /**
+     * Checks if the value is not used yet in the row, column or square where the cell belongs to.
+     *
+     * @param row
+     * @param column
+     * @param value
+     * @return {@code true} if the value can be placed without violating any constraint, otherwise {@code false}
+     */
+    @NotNull
+    public boolean isAllowed(final int row, final int column, final int value) {
+        return (getUsedValues(row, column) & toBit(value)) == 0;
+    }
+
+    /**
+     * Returns all the values which can be placed into the cell.
+     *
+     * @param row
+     * @param column
+     * @return Bitmask of the allowed values, bit {@code value - 1} is set for each allowed value.
+     */
+    @NotNull
+    public long getCandidates(final int row, final int column) {
+        return ~getUsedValues(row, column) & mAllValuesMask;
+    }
+
+    /**
+     * Marks the value as used in the row, column and square where the cell belongs to.
+     *
+     * @param row
+     * @param column
+     * @param value
+     */
+    public void place(final int row, final int column, final int value) {
+        final long bit = toBit(value);
+        mRowMasks[row] |= bit;
+        mColumnMasks[column] |= bit;
+        mSquareMasks[mMatrix.getSquareIndex(row, column)] |= bit;
+    }
+
+    /**
+     * Marks the value as not used in the row, column and square where the cell belongs to.
+     *
+     * @param row
+     * @param column
+     * @param value
+     */
+    public void remove(final int row, final int column, final int value) {
+        final long bit = ~toBit(value);
+        mRowMasks[row] &= bit;
+        mColumnMasks[column] &= bit;
+        mSquareMasks[mMatrix.getSquareIndex(row, column)] &= bit;
+    }
+
+    @NotNull
+    private long getUsedValues(final int row, final int column) {
+        return mRowMasks[row] | mColumnMasks[column] | mSquareMasks[mMatrix.getSquareIndex(row, column)];
+    }
+
+    @NotNull
+    private static long toBit(final int value) {
+        return 1L << (value - 1);
+    }
+}
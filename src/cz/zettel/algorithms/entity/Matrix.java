@@ -2,6 +2,7 @@ package cz.zettel.algorithms.entity;
 
 import com.sun.istack.internal.NotNull;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.slf4j.Logger;
@@ -10,31 +11,232 @@ import org.slf4j.LoggerFactory;
 /**
  * This class represents a structure holding a matrix of the values for Sudoku game.
  * It contains basic methods for the data manipulation in the matrix, they are used by the search algorithms.
+ * <p>
+ * The matrix is N&sup2;&times;N&sup2; cells with squares of N&times;N cells, where N is the square length. The standard
+ * matrix has the square length {@link #SQUARE_LENGTH}, other sizes are given by the size of the array passed to the
+ * constructor, up to {@link #MAX_LENGTH} values.
  */
 public class Matrix implements MatrixConstants {
 
     private static final Logger log = LoggerFactory.getLogger(Matrix.class.getName());
 
     /**
-     * 2D array of integer values representing all the cells in the Matrix.
+     * Number of the cells in the standard Matrix.
+     */
+    public static final int CELLS_COUNT = MATRIX_LENGTH * MATRIX_LENGTH;
+
+    /**
+     * Number of bytes needed to store complete state of the standard matrix by {@link #writeTo(ByteBuffer, int)}.
+     */
+    public static final int STATE_SIZE = getStateSize(MATRIX_LENGTH);
+
+    /**
+     * Maximal length of the matrix, so all the values of a unit fit into a {@code long} bitmask.
+     */
+    public static final int MAX_LENGTH = Long.SIZE;
+
+    /**
+     * Square index of each cell for each square length, shared by all the matrices of the same size.
+     */
+    private static final byte[][] SQUARE_INDICES = new byte[(int) Math.sqrt(MAX_LENGTH) + 1][];
+
+    static {
+        for (int squareLength = 1; squareLength < SQUARE_INDICES.length; squareLength++) {
+            final int length = squareLength * squareLength;
+            SQUARE_INDICES[squareLength] = new byte[length * length];
+            for (int i = 0; i < length; i++) {
+                for (int j = 0; j < length; j++) {
+                    SQUARE_INDICES[squareLength][i * length + j] = (byte) (i / squareLength * squareLength + j / squareLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * Length of the square, length of the rows and columns (which is also the number of the values) and number
+     * of the cells.
+     */
+    private final int mSquareLength, mLength, mCellsCount;
+    /**
+     * Square index of each cell, see {@link #getSquareIndex(int, int)}.
      */
     @NotNull
-    private final int[][] mMatrixValues;
+    private final byte[] mSquareIndices;
 
     /**
-     * Default constructor.
+     * Values of all the cells in the Matrix stored row by row, one byte per cell.
+     */
+    @NotNull
+    private final byte[] mCells;
+    /**
+     * Frequency histograms of the values for all the rows, columns and squares, maintained on every change of a cell.
+     * Histogram of the unit starts at the offset of the unit type + unit index * length of the matrix. The rows
+     * start at 0, the columns at the number of the cells and the squares at twice the number of the cells.
+     */
+    @NotNull
+    private final byte[] mOccurrences;
+    /**
+     * Total error maintained together with the occurrences.
+     */
+    private int mTotalError;
+
+    /**
+     * Default constructor. Size of the matrix is given by the number of the rows of the array, it must be a square
+     * of the square length.
      *
      * @param matrixValues 2D array of the cells
+     * @throws IllegalArgumentException if the array is not square or its length is not a square number
+     *                                  up to {@link #MAX_LENGTH}
      */
     public Matrix(int[][] matrixValues) {
-        mMatrixValues = new int[matrixValues.length][];
-        for (int i = 0; i < matrixValues.length; i++)
-            mMatrixValues[i] = matrixValues[i].clone();
+        mLength = matrixValues.length;
+        mSquareLength = (int) Math.round(Math.sqrt(mLength));
+        if (mLength == 0 || mLength > MAX_LENGTH || mSquareLength * mSquareLength != mLength) {
+            throw new IllegalArgumentException("Matrix length must be a square number from 1 to " + MAX_LENGTH
+                    + ", found " + mLength);
+        }
+        mCellsCount = mLength * mLength;
+        mSquareIndices = SQUARE_INDICES[mSquareLength];
+        mCells = new byte[mCellsCount];
+        mOccurrences = new byte[3 * mCellsCount];
+        // every unit misses all the values at the beginning
+        mTotalError = 3 * mCellsCount;
+        for (int i = 0; i < mLength; i++) {
+            if (matrixValues[i].length != mLength) {
+                throw new IllegalArgumentException("Row " + i + " must have " + mLength + " cells, found "
+                        + matrixValues[i].length);
+            }
+            for (int j = 0; j < mLength; j++) {
+                updateValue(i, j, checkValue(matrixValues[i][j]));
+            }
+        }
+    }
+
+    /**
+     * Copy constructor. The occurrences are copied instead of being calculated again.
+     *
+     * @param matrix Matrix to be copied
+     */
+    public Matrix(@NotNull final Matrix matrix) {
+        mSquareLength = matrix.mSquareLength;
+        mLength = matrix.mLength;
+        mCellsCount = matrix.mCellsCount;
+        mSquareIndices = matrix.mSquareIndices;
+        mCells = matrix.mCells.clone();
+        mOccurrences = matrix.mOccurrences.clone();
+        mTotalError = matrix.mTotalError;
+    }
+
+    /**
+     * Overwrites all the cells by the cells of another matrix of the same size.
+     *
+     * @param matrix Matrix to be copied
+     * @throws IllegalArgumentException if the other matrix has a different length
+     */
+    public void copyFrom(@NotNull final Matrix matrix) {
+        if (matrix.mLength != mLength) {
+            throw new IllegalArgumentException("Matrix length must be " + mLength + ", found " + matrix.mLength);
+        }
+        System.arraycopy(matrix.mCells, 0, mCells, 0, mCells.length);
+        System.arraycopy(matrix.mOccurrences, 0, mOccurrences, 0, mOccurrences.length);
+        mTotalError = matrix.mTotalError;
+    }
+
+    /**
+     * Writes complete state of the matrix (total error, cells and occurrences) to the buffer.
+     * The buffer position is changed, so each thread has to use its own view of a shared buffer.
+     *
+     * @param buffer target buffer
+     * @param offset absolute position in the buffer, {@link #getStateSize()} bytes are written from it
+     */
+    public void writeTo(@NotNull final ByteBuffer buffer, final int offset) {
+        buffer.putInt(offset, mTotalError);
+        buffer.position(offset + Integer.BYTES);
+        buffer.put(mCells);
+        buffer.put(mOccurrences);
+    }
+
+    /**
+     * Overwrites complete state of the matrix by the state previously stored by {@link #writeTo(ByteBuffer, int)}.
+     * The buffer position is changed, so each thread has to use its own view of a shared buffer.
+     *
+     * @param buffer source buffer
+     * @param offset absolute position in the buffer, {@link #getStateSize()} bytes are read from it
+     */
+    public void readFrom(@NotNull final ByteBuffer buffer, final int offset) {
+        mTotalError = buffer.getInt(offset);
+        buffer.position(offset + Integer.BYTES);
+        buffer.get(mCells);
+        buffer.get(mOccurrences);
+    }
+
+    /**
+     * Reads only the total error of the matrix stored by {@link #writeTo(ByteBuffer, int)}.
+     *
+     * @param buffer source buffer
+     * @param offset absolute position of the stored matrix in the buffer
+     * @return Total error of the stored matrix.
+     */
+    @NotNull
+    public static int readTotalError(@NotNull final ByteBuffer buffer, final int offset) {
+        return buffer.getInt(offset);
     }
 
+    /**
+     * @return Length of the rows and columns, which is also the highest value.
+     */
+    @NotNull
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * @return Length of the rows and columns of the squares.
+     */
+    @NotNull
+    public int getSquareLength() {
+        return mSquareLength;
+    }
+
+    @NotNull
+    public int getCellsCount() {
+        return mCellsCount;
+    }
+
+    /**
+     * @return Number of bytes needed to store complete state of the matrix by {@link #writeTo(ByteBuffer, int)}.
+     */
+    @NotNull
+    public int getStateSize() {
+        return getStateSize(mLength);
+    }
+
+    /**
+     * Calculates number of bytes needed to store complete state of a matrix by {@link #writeTo(ByteBuffer, int)}:
+     * the total error, the cells and the occurrences of the values in the rows, columns and squares.
+     *
+     * @param length length of the matrix
+     * @return Number of bytes.
+     */
+    @NotNull
+    public static int getStateSize(final int length) {
+        return Integer.BYTES + 4 * length * length;
+    }
+
+    /**
+     * Creates 2D array of the cells. Changes of the array are not reflected in the matrix. The cells are stored
+     * in one byte array, so new arrays are allocated by each call, the searches read the cells by
+     * {@link #getValue(int, int)} instead.
+     *
+     * @return new 2D array of the cells
+     */
     @NotNull
     public int[][] getArray() {
-        return mMatrixValues;
+        final int[][] array = new int[mLength][];
+        for (int i = 0; i < mLength; i++) {
+            array[i] = getRow(i);
+        }
+        return array;
     }
 
     /**
@@ -46,10 +248,11 @@ public class Matrix implements MatrixConstants {
      */
     @NotNull
     public boolean increaseValue(final int row, final int column) {
-        if (mMatrixValues[row][column] == MATRIX_LENGTH) {
+        final int value = getValue(row, column);
+        if (value == mLength) {
             return false;
         } else {
-            mMatrixValues[row][column] = mMatrixValues[row][column] + 1;
+            updateValue(row, column, value + 1);
             return true;
         }
     }
@@ -63,54 +266,114 @@ public class Matrix implements MatrixConstants {
      */
     @NotNull
     public boolean decreaseValue(final int row, final int column) {
-        if (mMatrixValues[row][column] == 1) {
+        final int value = getValue(row, column);
+        if (value == 1) {
             return false;
-        } else if (mMatrixValues[row][column] == EMPTY_VALUE) {
-            mMatrixValues[row][column] = MATRIX_LENGTH;
+        } else if (value == EMPTY_VALUE) {
+            updateValue(row, column, mLength);
             return true;
         } else {
-            mMatrixValues[row][column] = mMatrixValues[row][column] - 1;
+            updateValue(row, column, value - 1);
             return true;
         }
     }
 
     public void setValue(final int row, final int column, final int value) {
-        mMatrixValues[row][column] = value;
+        updateValue(row, column, checkValue(value));
     }
 
     @NotNull
     public int getValue(final int row, final int column) {
-        return mMatrixValues[row][column];
+        return mCells[row * mLength + column];
     }
 
     @NotNull
     public void deleteValue(final int row, final int column) {
-        mMatrixValues[row][column] = EMPTY_VALUE;
+        updateValue(row, column, EMPTY_VALUE);
     }
 
+    /**
+     * Creates array of the values in the row. Changes of the array are not reflected in the matrix and a new array
+     * is allocated by each call.
+     *
+     * @param row
+     * @return new array of the row values
+     */
     @NotNull
     public int[] getRow(final int row) {
-        return mMatrixValues[row];
+        final int[] rowArray = new int[mLength];
+        for (int i = 0; i < mLength; i++) {
+            rowArray[i] = getValue(row, i);
+        }
+        return rowArray;
     }
 
+    /**
+     * Creates array of the values in the column. Changes of the array are not reflected in the matrix.
+     *
+     * @param column
+     * @return new array of the column values
+     */
     @NotNull
     public int[] getColumn(final int column) {
-        final int[] columnArray = new int[MATRIX_LENGTH];
-        for (int i = 0; i < MATRIX_LENGTH; i++) {
-            columnArray[i] = mMatrixValues[i][column];
+        final int[] columnArray = new int[mLength];
+        for (int i = 0; i < mLength; i++) {
+            columnArray[i] = getValue(i, column);
         }
         return columnArray;
     }
 
     @NotNull
     public void setRow(final int row, final int[] rowArray) {
-        mMatrixValues[row] = rowArray.clone();
+        for (int i = 0; i < mLength; i++) {
+            updateValue(row, i, checkValue(rowArray[i]));
+        }
     }
 
     @NotNull
     public void setColumn(final int column, final int[] columnArray) {
-        for (int i = 0; i < MATRIX_LENGTH; i++) {
-            mMatrixValues[i][column] = columnArray[i];
+        for (int i = 0; i < mLength; i++) {
+            updateValue(i, column, checkValue(columnArray[i]));
+        }
+    }
+
+    /**
+     * Copies the row from another matrix without creating any intermediate array.
+     *
+     * @param row
+     * @param matrix Matrix to copy the row from
+     */
+    public void copyRow(final int row, @NotNull final Matrix matrix) {
+        for (int i = 0; i < mLength; i++) {
+            updateValue(row, i, matrix.getValue(row, i));
+        }
+    }
+
+    /**
+     * Copies the column from another matrix without creating any intermediate array.
+     *
+     * @param column
+     * @param matrix Matrix to copy the column from
+     */
+    public void copyColumn(final int column, @NotNull final Matrix matrix) {
+        for (int i = 0; i < mLength; i++) {
+            updateValue(i, column, matrix.getValue(i, column));
+        }
+    }
+
+    /**
+     * Copies the square from another matrix without creating any intermediate array.
+     *
+     * @param square index of the square, see {@link #getSquareIndex(int, int)}
+     * @param matrix Matrix to copy the square from
+     */
+    public void copySquare(final int square, @NotNull final Matrix matrix) {
+        final int firstRow = square / mSquareLength * mSquareLength;
+        final int firstColumn = square % mSquareLength * mSquareLength;
+        for (int i = firstRow; i < firstRow + mSquareLength; i++) {
+            for (int j = firstColumn; j < firstColumn + mSquareLength; j++) {
+                updateValue(i, j, matrix.getValue(i, j));
+            }
         }
     }
 
@@ -123,12 +386,33 @@ public class Matrix implements MatrixConstants {
      */
     @NotNull
     public boolean isConstraintViolated(int row, int column) {
-        return calculateTopOccurrence(getRowOccurrences(row)) > 1
-                || calculateTopOccurrence(getColumnOccurrences(column)) > 1
-                || calculateTopOccurrence(getSquareOccurrences(row, column)) > 1
+        return calculateTopOccurrence(getRowOffset(row)) > 1
+                || calculateTopOccurrence(getColumnOffset(column)) > 1
+                || calculateTopOccurrence(getSquareOffset(row, column)) > 1
                 ? true : false;
     }
 
+    /**
+     * Counts the units (row, column, square) of the cell where the value of the cell is repeated. Unlike
+     * {@link #isConstraintViolated(int, int)} it reads only the histograms of the cell value, so it takes constant time.
+     *
+     * @param row
+     * @param column
+     * @return Number of the units from 0 to 3, 0 for an empty cell.
+     */
+    @NotNull
+    public int getConflictCount(final int row, final int column) {
+        final int value = getValue(row, column);
+        if (value == EMPTY_VALUE) {
+            return 0;
+        }
+        int conflicts = 0;
+        if (mOccurrences[getRowOffset(row) + value - 1] > 1) conflicts++;
+        if (mOccurrences[getColumnOffset(column) + value - 1] > 1) conflicts++;
+        if (mOccurrences[getSquareOffset(row, column) + value - 1] > 1) conflicts++;
+        return conflicts;
+    }
+
     /**
      * Calculates an error of the square where the cell belongs to.
      *
@@ -138,169 +422,167 @@ public class Matrix implements MatrixConstants {
      */
     @NotNull
     public int getSquareError(int row, int column) {
-        return calculateError(getSquareOccurrences(row, column));
+        return calculateError(getSquareOffset(row, column));
     }
 
     @NotNull
     public int getRowError(final int row) {
-        return calculateError(getRowOccurrences(row));
+        return calculateError(getRowOffset(row));
     }
 
     @NotNull
     public int getColumnError(final int column) {
-        return calculateError(getColumnOccurrences(column));
+        return calculateError(getColumnOffset(column));
     }
 
     /**
-     * Calculates total error for the current matrix.
-     * It is a sum of error calculated for all the squares + rows + columns.
+     * Returns total error for the current matrix.
+     * It is a sum of error calculated for all the squares + rows + columns. The error is maintained on every change
+     * of a cell, so this method does not need to iterate the matrix.
      *
      * @return Total error.
      */
     @NotNull
     public int getTotalError() {
-        int totalError = 0;
-        // calculate error of all the squares
-        for (int i = 0; i < MATRIX_LENGTH; i += SQUARE_LENGTH) {
-            for (int j = 0; j < MATRIX_LENGTH; j += SQUARE_LENGTH) {
-                log.trace("getTotalError row = {}, column = {}", i, j);
-                totalError += getSquareError(i, j);
-            }
-        }
-        // calculate error of all the rows and columns
-        for (int i = 0; i < MATRIX_LENGTH; i++) {
-            totalError += getRowError(i);
-            totalError += getColumnError(i);
-        }
-        return totalError;
+        return mTotalError;
     }
 
+    /**
+     * Checks if the matrix is completely and correctly solved. Any empty cell or repeated value leaves some value
+     * missing in its units, so the matrix is solved exactly when the total error is zero.
+     *
+     * @return {@code true} if the matrix is solved, otherwise {@code false}
+     */
+    @NotNull
+    public boolean isSolved() {
+        return mTotalError == 0;
+    }
 
     /**
-     * Calculate occurrences of the values in a square where a cell belongs to.
+     * Returns index of the square where the cell belongs to. Squares are indexed row by row from the top-left.
      *
      * @param row
      * @param column
-     * @return A vector of occurrences for each possible value = frequency histogram.
+     * @return square index
      */
     @NotNull
-    private int[] getSquareOccurrences(final int row, final int column) {
-        final int startIndexRow, startIndexColumn;
-        final int occurrences[] = new int[MATRIX_LENGTH];
-
-        // FIND STARTING INDICES
-
-        // find division reminder
-        if (row % SQUARE_LENGTH == 0) {
-            startIndexRow = row;
-        } else {
-            // find division quotient
-            startIndexRow = row / SQUARE_LENGTH * SQUARE_LENGTH;
-        }
-        // find division reminder
-        if (column % SQUARE_LENGTH == 0) {
-            startIndexColumn = column;
-        } else {
-            // find division quotient
-            startIndexColumn = column / SQUARE_LENGTH * SQUARE_LENGTH;
-        }
-        log.trace("row = {}, column = {}", row, column);
-        log.trace("startIndexRow = {}, startIndexColumn = {}", startIndexRow, startIndexColumn);
-
+    public int getSquareIndex(final int row, final int column) {
+        return mSquareIndices[row * mLength + column];
+    }
 
-        int currentValue;
-        for (int i = 0; i < SQUARE_LENGTH; i++) {
-            for (int j = 0; j < SQUARE_LENGTH; j++) {
-                currentValue = mMatrixValues[startIndexRow + i][startIndexColumn + j];
-                addOccurrence(occurrences, currentValue);
-            }
+    /**
+     * Checks the value given from outside of the matrix. The occurrences of all the units are stored in one array,
+     * so a value out of the range would silently change the occurrences of another unit.
+     *
+     * @param value value of a cell
+     * @return The value.
+     * @throws IllegalArgumentException if the value is not from 0 (empty cell) to the length of the matrix
+     */
+    private int checkValue(final int value) {
+        if (value < EMPTY_VALUE || value > mLength) {
+            throw new IllegalArgumentException("Value must be from " + EMPTY_VALUE + " to " + mLength + ": " + value);
         }
-        return occurrences;
+        return value;
+    }
 
+    /**
+     * Changes value of the cell and updates the occurrences and total error accordingly.
+     *
+     * @param row
+     * @param column
+     * @param value  new value
+     */
+    private void updateValue(final int row, final int column, final int value) {
+        final int index = row * mLength + column;
+        removeOccurrence(row, column, mCells[index]);
+        mCells[index] = (byte) value;
+        addOccurrence(row, column, value);
     }
 
     /**
-     * Calculate occurrences of the values in a row.
+     * Adds an occurrence of a value to the histograms of the row, column and square where the cell belongs to.
+     * Total error decreases for each unit where the value was missing.
      *
      * @param row
-     * @return A vector of occurrences for each possible value = frequency histogram.
+     * @param column
+     * @param value
      */
-    @NotNull
-    private int[] getRowOccurrences(final int row) {
-        final int occurrences[] = new int[MATRIX_LENGTH];
-        for (final int currentValue : mMatrixValues[row]) {
-            addOccurrence(occurrences, currentValue);
+    private void addOccurrence(final int row, final int column, final int value) {
+        // do not calculate occurrences of initial zeroes
+        if (value != EMPTY_VALUE) {
+            if (mOccurrences[getRowOffset(row) + value - 1]++ == 0) mTotalError--;
+            if (mOccurrences[getColumnOffset(column) + value - 1]++ == 0) mTotalError--;
+            if (mOccurrences[getSquareOffset(row, column) + value - 1]++ == 0) mTotalError--;
         }
-        return occurrences;
     }
 
     /**
-     * Calculate occurrences of the values in a column.
+     * Removes an occurrence of a value from the histograms of the row, column and square where the cell belongs to.
+     * Total error increases for each unit where the value becomes missing.
      *
+     * @param row
      * @param column
-     * @return A vector of occurrences for each possible value = frequency histogram.
+     * @param value
      */
-    @NotNull
-    private int[] getColumnOccurrences(final int column) {
-        final int occurrences[] = new int[MATRIX_LENGTH];
-        for (int i = 0; i < MATRIX_LENGTH; i++) {
-            addOccurrence(occurrences, mMatrixValues[i][column]);
+    private void removeOccurrence(final int row, final int column, final int value) {
+        if (value != EMPTY_VALUE) {
+            if (--mOccurrences[getRowOffset(row) + value - 1] == 0) mTotalError++;
+            if (--mOccurrences[getColumnOffset(column) + value - 1] == 0) mTotalError++;
+            if (--mOccurrences[getSquareOffset(row, column) + value - 1] == 0) mTotalError++;
         }
-        return occurrences;
+    }
+
+    @NotNull
+    private int getRowOffset(final int row) {
+        return row * mLength;
+    }
+
+    @NotNull
+    private int getColumnOffset(final int column) {
+        return mCellsCount + column * mLength;
+    }
+
+    @NotNull
+    private int getSquareOffset(final int row, final int column) {
+        return 2 * mCellsCount + getSquareIndex(row, column) * mLength;
     }
 
     /**
-     * Calculates error from the frequency histogram vector.
+     * Calculates error from the frequency histogram of a unit.
      *
-     * @param occurrences
+     * @param offset offset of the unit histogram
      * @return Error calculated as number of missing values out of the enumeration.
      */
     @NotNull
-    private int calculateError(final int[] occurrences) {
+    private int calculateError(final int offset) {
         int error = 0;
-        // increase square error on each missing value
-        for (int value : occurrences) {
-            error = value == 0 ? error + 1 : error;
+        // increase unit error on each missing value
+        for (int i = offset; i < offset + mLength; i++) {
+            error = mOccurrences[i] == 0 ? error + 1 : error;
         }
         return error;
     }
 
     /**
-     * Calculates top occurrence of any value in the occurrences vector.
+     * Calculates top occurrence of any value in the frequency histogram of a unit.
      *
-     * @param occurrences
+     * @param offset offset of the unit histogram
      * @return Only the highest occurrence.
      */
     @NotNull
-    private int calculateTopOccurrence(final int[] occurrences) {
+    private int calculateTopOccurrence(final int offset) {
         int result = 0;
-        for (int value : occurrences) {
-            result = value > result ? value : result;
+        for (int i = offset; i < offset + mLength; i++) {
+            result = mOccurrences[i] > result ? mOccurrences[i] : result;
         }
         return result;
     }
 
-    /**
-     * Adds an occurrence of a value to the occurrences vector.
-     *
-     * @param occurrences
-     * @param currentValue
-     * @return occurrences vector increased of occurrence given by the value
-     */
-    @NotNull
-    private int[] addOccurrence(int[] occurrences, final int currentValue) {
-        // calculate occurrences of values, do not calculate occurrences of initial zeroes
-        if (currentValue != 0) {
-            occurrences[currentValue - 1]++;
-        }
-        return occurrences;
-    }
-
     @Override
     public String toString() {
         String matrix = "";
-        for (int[] row : mMatrixValues) {
-            matrix = matrix + System.lineSeparator() + Arrays.toString(row);
+        for (int i = 0; i < mLength; i++) {
+            matrix = matrix + System.lineSeparator() + Arrays.toString(getRow(i));
         }
         return matrix;
     }
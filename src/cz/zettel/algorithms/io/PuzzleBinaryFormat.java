@@ -0,0 +1,202 @@
+package cz.zettel.algorithms.io;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class describes the compact binary format of the files of matrices, written by {@link PuzzleBinaryWriter}
+ * and read by {@link PuzzleBinaryReader}.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes:
+ * <pre>
+ *  0  int   magic number "SDKB"
+ *  4  short version
+ *  6  byte  length of the matrices
+ *  7  byte  bits per cell
+ *  8  byte  flags, {@link #FLAG_SOLUTIONS} if each record holds the solution too
+ * 12  int   record size in bytes
+ * 16  long  number of the records
+ * </pre>
+ * The records of the same size follow, so the record of any index is found without reading the others. A record
+ * is the matrix and optionally its solution, each of them packed row by row using the lowest number of bits which
+ * holds the values and the empty cell (4 bits for the standard matrix, so 41 bytes instead of 81 characters and a line
+ * separator) and padded to whole bytes.
+ */
+public final class PuzzleBinaryFormat {
+
+    public static final String FILE_EXTENSION = ".bin";
+
+    static final int MAGIC = 0x53444B42;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final byte FLAG_SOLUTIONS = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int LENGTH_OFFSET = 6;
+    private static final int BITS_OFFSET = 7;
+    private static final int FLAGS_OFFSET = 8;
+    private static final int RECORD_SIZE_OFFSET = 12;
+    private static final int RECORD_COUNT_OFFSET = 16;
+
+    private PuzzleBinaryFormat() {
+    }
+
+    /**
+     * @param length Length of the matrix
+     * @return Number of bits holding the values from 0 to the length.
+     */
+    public static int getBitsPerCell(final int length) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(length);
+    }
+
+    /**
+     * @param length Length of the matrix
+     * @return Number of bytes of one packed matrix.
+     */
+    public static int getMatrixSize(final int length) {
+        return (length * length * getBitsPerCell(length) + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    /**
+     * @param length        Length of the matrices
+     * @param withSolutions {@code true} if the records hold the solutions too
+     * @return Number of bytes of one record.
+     */
+    public static int getRecordSize(final int length, final boolean withSolutions) {
+        return withSolutions ? 2 * getMatrixSize(length) : getMatrixSize(length);
+    }
+
+    static void writeHeader(@NotNull final ByteBuffer header, final int length, final boolean withSolutions,
+                            final long recordCount) {
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putShort(VERSION_OFFSET, VERSION);
+        header.put(LENGTH_OFFSET, (byte) length);
+        header.put(BITS_OFFSET, (byte) getBitsPerCell(length));
+        header.put(FLAGS_OFFSET, withSolutions ? FLAG_SOLUTIONS : 0);
+        header.putInt(RECORD_SIZE_OFFSET, getRecordSize(length, withSolutions));
+        header.putLong(RECORD_COUNT_OFFSET, recordCount);
+    }
+
+    /**
+     * Checks the header and returns the length of the matrices.
+     *
+     * @throws IOException if the header does not belong to a file of this format
+     */
+    static int readLength(@NotNull final ByteBuffer header) throws IOException {
+        if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a binary matrix file");
+        }
+        if (header.getShort(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unsupported version " + header.getShort(VERSION_OFFSET));
+        }
+        final int length = header.get(LENGTH_OFFSET);
+        final int squareLength = (int) Math.round(Math.sqrt(length));
+        if (length < 1 || length > Matrix.MAX_LENGTH || squareLength * squareLength != length) {
+            throw new IOException("Invalid matrix length " + length);
+        }
+        if (header.get(BITS_OFFSET) != getBitsPerCell(length)
+                || header.getInt(RECORD_SIZE_OFFSET) != getRecordSize(length, hasSolutions(header))) {
+            throw new IOException("Invalid record size " + header.getInt(RECORD_SIZE_OFFSET));
+        }
+        if (header.getLong(RECORD_COUNT_OFFSET) < 0) {
+            throw new IOException("Invalid record count " + header.getLong(RECORD_COUNT_OFFSET));
+        }
+        return length;
+    }
+
+    static boolean hasSolutions(@NotNull final ByteBuffer header) {
+        return (header.get(FLAGS_OFFSET) & FLAG_SOLUTIONS) != 0;
+    }
+
+    static long readRecordCount(@NotNull final ByteBuffer header) {
+        return header.getLong(RECORD_COUNT_OFFSET);
+    }
+
+    /**
+     * Packs the cells of the matrix to the buffer from the absolute position, the buffer position is not changed.
+     *
+     * @param matrix Matrix to be packed
+     * @param buffer Target buffer
+     * @param offset Absolute position of the packed matrix
+     */
+    static void encode(@NotNull final Matrix matrix, @NotNull final ByteBuffer buffer, int offset) {
+        final int length = matrix.getLength();
+        final int bitsPerCell = getBitsPerCell(length);
+        long bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                bits |= (long) matrix.getValue(i, j) << bitCount;
+                bitCount += bitsPerCell;
+                while (bitCount >= Byte.SIZE) {
+                    buffer.put(offset++, (byte) bits);
+                    bits >>>= Byte.SIZE;
+                    bitCount -= Byte.SIZE;
+                }
+            }
+        }
+        if (bitCount > 0) {
+            buffer.put(offset, (byte) bits);
+        }
+    }
+
+    /**
+     * Unpacks the cells from the absolute position of the buffer to the matrix, the buffer position is not changed.
+     *
+     * @param buffer Source buffer
+     * @param offset Absolute position of the packed matrix
+     * @param matrix Matrix overwritten by the cells
+     * @throws IllegalStateException if a packed value is greater than the length of the matrix
+     */
+    static void decode(@NotNull final ByteBuffer buffer, int offset, @NotNull final Matrix matrix) {
+        final int length = matrix.getLength();
+        final int bitsPerCell = getBitsPerCell(length);
+        final int mask = (1 << bitsPerCell) - 1;
+        int bits = 0;
+        int bitCount = 0;
+        int value;
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                if (bitCount < bitsPerCell) {
+                    bits |= (buffer.get(offset++) & 0xFF) << bitCount;
+                    bitCount += Byte.SIZE;
+                }
+                value = bits & mask;
+                bits >>>= bitsPerCell;
+                bitCount -= bitsPerCell;
+                if (value > length) {
+                    throw new IllegalStateException("Invalid value " + value + " of the cell [" + i + ", " + j + "]");
+                }
+                matrix.setValue(i, j, value);
+            }
+        }
+    }
+
+    /**
+     * Unpacks the cells from the absolute position of the buffer to the flat array, row by row.
+     *
+     * @param buffer Source buffer
+     * @param offset Absolute position of the packed matrix
+     * @param length Length of the matrix
+     * @param cells  Target array of at least length &times; length cells
+     */
+    static void decode(@NotNull final ByteBuffer buffer, int offset, final int length, @NotNull final byte[] cells) {
+        final int bitsPerCell = getBitsPerCell(length);
+        final int mask = (1 << bitsPerCell) - 1;
+        int bits = 0;
+        int bitCount = 0;
+        for (int cell = 0; cell < length * length; cell++) {
+            if (bitCount < bitsPerCell) {
+                bits |= (buffer.get(offset++) & 0xFF) << bitCount;
+                bitCount += Byte.SIZE;
+            }
+            cells[cell] = (byte) (bits & mask);
+            bits >>>= bitsPerCell;
+            bitCount -= bitsPerCell;
+        }
+    }
+}
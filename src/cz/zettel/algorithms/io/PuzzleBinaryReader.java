@@ -0,0 +1,184 @@
+package cz.zettel.algorithms.io;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads a file in the {@link PuzzleBinaryFormat} mapped to the memory, so opening even a file of several
+ * gigabytes only maps it and the records are read by the operating system when they are accessed. A mapped buffer
+ * is limited to 2 GB, bigger files are mapped in chunks of whole records.
+ * <p>
+ * Any record is read by its index, the matrices are decoded into a matrix or an array given by the caller, so reading
+ * does not allocate anything. The reader can be shared by many threads, e.g. each of them processing its own range
+ * of the records, as long as each thread decodes into its own matrix.
+ * <p>
+ * The mapping is released when the reader is garbage collected, there is no way to unmap the file earlier.
+ */
+public class PuzzleBinaryReader {
+
+    /**
+     * Maximal size of one mapped chunk.
+     */
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final int mLength;
+    private final boolean mWithSolutions;
+    private final long mRecordCount;
+    private final int mMatrixSize;
+    private final int mRecordSize;
+    private final int mChunkRecords;
+    @NotNull
+    private final MappedByteBuffer[] mChunks;
+
+    /**
+     * Constructor, maps the whole file.
+     *
+     * @param path Path of the file
+     * @throws IOException if the file cannot be read or it is not a complete file of the binary format
+     */
+    public PuzzleBinaryReader(@NotNull final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(PuzzleBinaryFormat.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new EOFException("Missing header of " + path);
+                }
+            }
+            mLength = PuzzleBinaryFormat.readLength(header);
+            mWithSolutions = PuzzleBinaryFormat.hasSolutions(header);
+            mRecordCount = PuzzleBinaryFormat.readRecordCount(header);
+            mMatrixSize = PuzzleBinaryFormat.getMatrixSize(mLength);
+            mRecordSize = PuzzleBinaryFormat.getRecordSize(mLength, mWithSolutions);
+            if (channel.size() < PuzzleBinaryFormat.HEADER_SIZE + mRecordCount * mRecordSize) {
+                throw new EOFException("File " + path + " is shorter than " + mRecordCount + " records");
+            }
+            mChunkRecords = (int) (CHUNK_SIZE / mRecordSize);
+            mChunks = new MappedByteBuffer[(int) ((mRecordCount + mChunkRecords - 1) / mChunkRecords)];
+            for (int i = 0; i < mChunks.length; i++) {
+                final long firstRecord = (long) i * mChunkRecords;
+                final long records = Math.min(mChunkRecords, mRecordCount - firstRecord);
+                mChunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        PuzzleBinaryFormat.HEADER_SIZE + firstRecord * mRecordSize, records * mRecordSize);
+            }
+        }
+    }
+
+    public int getLength() {
+        return mLength;
+    }
+
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * @return {@code true} if the records hold the solutions of the matrices.
+     */
+    public boolean hasSolutions() {
+        return mWithSolutions;
+    }
+
+    /**
+     * Creates an empty matrix of the length of the file, to be reused for reading the records.
+     *
+     * @return New matrix.
+     */
+    @NotNull
+    public Matrix newMatrix() {
+        return new Matrix(new int[mLength][mLength]);
+    }
+
+    /**
+     * Reads the matrix of the record.
+     *
+     * @param index  Index of the record
+     * @param matrix Matrix of the length of the file overwritten by the read matrix
+     * @return The given matrix.
+     * @throws IndexOutOfBoundsException if there is no such record
+     * @throws IllegalStateException     if the record contains an invalid value
+     */
+    @NotNull
+    public Matrix readMatrix(final long index, @NotNull final Matrix matrix) {
+        checkLength(matrix);
+        PuzzleBinaryFormat.decode(getChunk(index), getOffset(index), matrix);
+        return matrix;
+    }
+
+    /**
+     * Reads the solution of the record.
+     *
+     * @param index    Index of the record
+     * @param solution Matrix of the length of the file overwritten by the read solution
+     * @return The given matrix.
+     * @throws IndexOutOfBoundsException if there is no such record
+     * @throws IllegalStateException     if the file does not hold the solutions or the record contains an invalid value
+     */
+    @NotNull
+    public Matrix readSolution(final long index, @NotNull final Matrix solution) {
+        checkSolutions();
+        checkLength(solution);
+        PuzzleBinaryFormat.decode(getChunk(index), getOffset(index) + mMatrixSize, solution);
+        return solution;
+    }
+
+    /**
+     * Reads the cells of the matrix of the record row by row to the array, the values are not checked.
+     *
+     * @param index Index of the record
+     * @param cells Array of at least length &times; length cells
+     * @return The given array.
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    @NotNull
+    public byte[] readMatrix(final long index, @NotNull final byte[] cells) {
+        PuzzleBinaryFormat.decode(getChunk(index), getOffset(index), mLength, cells);
+        return cells;
+    }
+
+    /**
+     * Reads the cells of the solution of the record row by row to the array, the values are not checked.
+     *
+     * @param index Index of the record
+     * @param cells Array of at least length &times; length cells
+     * @return The given array.
+     * @throws IndexOutOfBoundsException if there is no such record
+     * @throws IllegalStateException     if the file does not hold the solutions
+     */
+    @NotNull
+    public byte[] readSolution(final long index, @NotNull final byte[] cells) {
+        checkSolutions();
+        PuzzleBinaryFormat.decode(getChunk(index), getOffset(index) + mMatrixSize, mLength, cells);
+        return cells;
+    }
+
+    private ByteBuffer getChunk(final long index) {
+        if (index < 0 || index >= mRecordCount) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + mRecordCount);
+        }
+        return mChunks[(int) (index / mChunkRecords)];
+    }
+
+    private int getOffset(final long index) {
+        return (int) (index % mChunkRecords) * mRecordSize;
+    }
+
+    private void checkLength(final Matrix matrix) {
+        if (matrix.getLength() != mLength) {
+            throw new IllegalArgumentException("Matrix length must be " + mLength + ", found " + matrix.getLength());
+        }
+    }
+
+    private void checkSolutions() {
+        if (!mWithSolutions) {
+            throw new IllegalStateException("The file does not hold the solutions");
+        }
+    }
+}
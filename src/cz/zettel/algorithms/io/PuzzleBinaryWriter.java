@@ -0,0 +1,148 @@
+package cz.zettel.algorithms.io;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes matrices of the same length to a file in the {@link PuzzleBinaryFormat}, optionally together
+ * with their solutions. The records are collected in a buffer and written in blocks, the number of the records
+ * is written to the header when the writer is closed.
+ */
+public class PuzzleBinaryWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int mLength;
+    private final boolean mWithSolutions;
+    private final int mMatrixSize;
+    private final int mRecordSize;
+    @NotNull
+    private final FileChannel mChannel;
+    @NotNull
+    private final ByteBuffer mBuffer;
+    private long mRecordCount;
+
+    /**
+     * Constructor, the file is created or overwritten.
+     *
+     * @param path          Path of the file
+     * @param length        Length of the matrices
+     * @param withSolutions {@code true} to write each matrix together with its solution
+     * @throws IOException if the file cannot be opened
+     */
+    public PuzzleBinaryWriter(@NotNull final Path path, final int length, final boolean withSolutions)
+            throws IOException {
+        final int squareLength = (int) Math.round(Math.sqrt(length));
+        if (length < 1 || length > Matrix.MAX_LENGTH || squareLength * squareLength != length) {
+            throw new IllegalArgumentException("Matrix length must be a square number from 1 to " + Matrix.MAX_LENGTH
+                    + ", found " + length);
+        }
+        mLength = length;
+        mWithSolutions = withSolutions;
+        mMatrixSize = PuzzleBinaryFormat.getMatrixSize(length);
+        mRecordSize = PuzzleBinaryFormat.getRecordSize(length, withSolutions);
+        mBuffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE / mRecordSize, 1) * mRecordSize);
+        mChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        try {
+            writeHeader();
+            mChannel.position(PuzzleBinaryFormat.HEADER_SIZE);
+        } catch (IOException e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the matrix to a file without the solutions.
+     *
+     * @param matrix Matrix to be written
+     * @throws IOException if writing fails
+     */
+    public void write(@NotNull final Matrix matrix) throws IOException {
+        if (mWithSolutions) {
+            throw new IllegalStateException("The file holds the solutions, write the matrix with its solution");
+        }
+        writeRecord(matrix, null);
+    }
+
+    /**
+     * Writes the matrix and its solution to a file with the solutions.
+     *
+     * @param matrix   Matrix to be written
+     * @param solution Solution of the matrix
+     * @throws IOException if writing fails
+     */
+    public void write(@NotNull final Matrix matrix, @NotNull final Matrix solution) throws IOException {
+        if (!mWithSolutions) {
+            throw new IllegalStateException("The file does not hold the solutions");
+        }
+        writeRecord(matrix, solution);
+    }
+
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Writes the remaining records and the header with the number of the records.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            writeHeader();
+        } finally {
+            mChannel.close();
+        }
+    }
+
+    private void writeRecord(final Matrix matrix, final Matrix solution) throws IOException {
+        checkLength(matrix);
+        if (solution != null) {
+            checkLength(solution);
+        }
+        if (mBuffer.remaining() < mRecordSize) {
+            flush();
+        }
+        final int position = mBuffer.position();
+        PuzzleBinaryFormat.encode(matrix, mBuffer, position);
+        if (solution != null) {
+            PuzzleBinaryFormat.encode(solution, mBuffer, position + mMatrixSize);
+        }
+        mBuffer.position(position + mRecordSize);
+        mRecordCount++;
+    }
+
+    private void checkLength(final Matrix matrix) {
+        if (matrix.getLength() != mLength) {
+            throw new IllegalArgumentException("Matrix length must be " + mLength + ", found " + matrix.getLength());
+        }
+    }
+
+    private void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(PuzzleBinaryFormat.HEADER_SIZE);
+        PuzzleBinaryFormat.writeHeader(header, mLength, mWithSolutions, mRecordCount);
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += mChannel.write(header, position);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package cz.zettel.algorithms.io;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+/**
+ * This class converts matrices from and to the common one-line text format. Each line holds all the cells row by row,
+ * one character per cell. Digits 1-9 and then letters A-Z (e.g. A-G for 16&times;16 matrices) are the values,
+ * {@code 0} or {@code .} is an empty cell. Size of the matrix is given by the length of the line, e.g. 81 characters
+ * for the standard matrix.
+ */
+public final class PuzzleLineFormat {
+
+    private static final char EMPTY_CHARACTER = '.';
+    /**
+     * Highest value which has its character.
+     */
+    private static final int MAX_VALUE = 9 + 'Z' - 'A' + 1;
+
+    private PuzzleLineFormat() {
+    }
+
+    /**
+     * Parses the line into new matrix.
+     *
+     * @param line line of {@link Matrix#CELLS_COUNT} characters for the standard matrix, or a square of the length
+     *             of another matrix
+     * @return parsed matrix
+     * @throws IllegalArgumentException if the line has wrong length or contains unknown character
+     */
+    @NotNull
+    public static Matrix parse(@NotNull final String line) {
+        final int length = (int) Math.round(Math.sqrt(line.length()));
+        final int squareLength = (int) Math.round(Math.sqrt(length));
+        if (line.isEmpty() || length * length != line.length() || squareLength * squareLength != length
+                || length > MAX_VALUE) {
+            throw new IllegalArgumentException("Line must have " + Matrix.CELLS_COUNT
+                    + " characters or the fourth power of other square length, found " + line.length());
+        }
+        final int[][] values = new int[length][length];
+        char character;
+        int value;
+        for (int i = 0; i < line.length(); i++) {
+            character = line.charAt(i);
+            value = toValue(character);
+            if (value >= 1 && value <= length) {
+                values[i / length][i % length] = value;
+            } else if (character != '0' && character != EMPTY_CHARACTER) {
+                throw new IllegalArgumentException("Unknown character '" + character + "' at position " + i);
+            }
+        }
+        return new Matrix(values);
+    }
+
+    /**
+     * Formats the matrix into one line, empty cells are written as {@code 0}.
+     *
+     * @param matrix  Matrix to be formatted
+     * @param builder builder the line is appended to
+     * @return the builder
+     * @throws IllegalArgumentException if the values of the matrix do not have their characters
+     */
+    @NotNull
+    public static StringBuilder format(@NotNull final Matrix matrix, @NotNull final StringBuilder builder) {
+        final int length = matrix.getLength();
+        if (length > MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix length must be at most " + MAX_VALUE + ", found " + length);
+        }
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                builder.append(toCharacter(matrix.getValue(i, j)));
+            }
+        }
+        return builder;
+    }
+
+    private static int toValue(final char character) {
+        if (character >= '0' && character <= '9') {
+            return character - '0';
+        } else if (character >= 'A' && character <= 'Z') {
+            return character - 'A' + 10;
+        } else if (character >= 'a' && character <= 'z') {
+            return character - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private static char toCharacter(final int value) {
+        return (char) (value <= 9 ? '0' + value : 'A' + value - 10);
+    }
+}
@@ -1,19 +1,79 @@
 package cz.zettel.algorithms.logic;
 
 import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.CandidateMasks;
 import cz.zettel.algorithms.entity.Matrix;
 import cz.zettel.algorithms.entity.MatrixConstants;
+import cz.zettel.algorithms.metrics.SearchCounters;
+import cz.zettel.algorithms.metrics.SearchMetrics;
 
 /**
  * This class holds common features of any search algorithm.
- *
+ * <p>
+ * The constructors taking a matrix solve it right away. A search created for a matrix length only is reusable:
+ * each call of {@link #solve(Matrix)} solves another matrix of that length, and the buffers of the search (stacks,
+ * masks, populations) are kept between the calls. The results of a reusable search are valid until the next call.
+ * <p>
+ * Each solve counts its work by the {@link SearchCounters}, which are added to the {@link SearchMetrics} of the class
+ * of the search together with the latency of the solve when it ends.
+ * <p>
+ * A solve can be bounded by a {@link SolveBudget}. The searches check it by {@link #isStopRequested()} in their main
+ * loop, so they stop shortly after the deadline and return the best board found so far. The outcome of the last solve
+ * is given by {@link #getStatus()}.
  */
 public abstract class AbstractSearch implements LogicComparable, MatrixConstants {
 
+    /**
+     * Deadline check interval of the backtracking searches, an iteration of their loop takes a few nanoseconds.
+     */
+    static final int BACKTRACKING_DEADLINE_CHECK_INTERVAL = 64;
+
     @NotNull
     Matrix mInitialMatrix;
+    /**
+     * Length of the rows and columns of the initial matrix (the highest value), length of its squares
+     * and number of its cells.
+     */
+    final int mMatrixLength, mSquareLength, mCellsCount;
+    /**
+     * Matrix the search starts from. It is the initial matrix, or the matrix reduced by the {@link Presolver}.
+     * Its non-empty cells cannot be changed by the search.
+     */
+    @NotNull
+    Matrix mStartMatrix;
+    /**
+     * Presolver which reduced the start matrix, {@code null} if the search starts from the initial matrix.
+     */
+    Presolver mPresolver;
+    /**
+     * {@code true} to reduce each matrix by the {@link Presolver} before the search.
+     */
+    boolean mPresolve;
     Matrix mSolvedMatrix;
+    /**
+     * Matrix the search works on, it is reused by each solve.
+     */
+    private Matrix mWorkMatrix;
     Long mStartTime, mElapsedTime;
+    /**
+     * Counters of the current solve.
+     */
+    final SearchCounters mCounters = new SearchCounters();
+    private SearchMetrics mMetrics;
+    /**
+     * Budget of the current solve: deadline by {@link System#nanoTime()}, limit and count of the iterations.
+     */
+    private boolean mHasDeadline;
+    private long mDeadline, mIterationLimit = Long.MAX_VALUE, mIterations;
+    /**
+     * Mask of the iteration count, the deadline is checked when the masked count is zero.
+     */
+    private long mDeadlineCheckMask;
+    /**
+     * Why the current solve was stopped, {@code null} if it was not.
+     */
+    SolveStatus mStopStatus;
+    private SolveStatus mStatus;
 
     /**
      * Default constructor.
@@ -23,6 +83,214 @@ public abstract class AbstractSearch implements LogicComparable, MatrixConstants
     public AbstractSearch(@NotNull final Matrix initialMatrix) {
         mStartTime = System.currentTimeMillis();
         mInitialMatrix = initialMatrix;
+        mStartMatrix = initialMatrix;
+        mMatrixLength = initialMatrix.getLength();
+        mSquareLength = initialMatrix.getSquareLength();
+        mCellsCount = initialMatrix.getCellsCount();
+    }
+
+    /**
+     * Constructor of a reusable search, the matrices are solved by {@link #solve(Matrix)}.
+     *
+     * @param length Length of the matrices to be solved.
+     */
+    AbstractSearch(final int length) {
+        mSquareLength = (int) Math.round(Math.sqrt(length));
+        if (length < 1 || length > Matrix.MAX_LENGTH || mSquareLength * mSquareLength != length) {
+            throw new IllegalArgumentException("Matrix length must be a square up to " + Matrix.MAX_LENGTH + ": " + length);
+        }
+        mMatrixLength = length;
+        mCellsCount = length * length;
+    }
+
+    /**
+     * Solves the matrix. The buffers of the search are reused, so the previous result of this search is overwritten.
+     *
+     * @param initialMatrix Matrix to be solved, of the length the search was created for.
+     * @return This search holding the result.
+     */
+    @NotNull
+    public final LogicComparable solve(@NotNull final Matrix initialMatrix) {
+        if (initialMatrix.getLength() != mMatrixLength) {
+            throw new IllegalArgumentException("Search of " + mMatrixLength + "x" + mMatrixLength
+                    + " matrices cannot solve matrix of length " + initialMatrix.getLength());
+        }
+        final long startNanos = System.nanoTime();
+        mStartTime = System.currentTimeMillis();
+        mElapsedTime = null;
+        mCounters.reset();
+        mIterations = 0;
+        mDeadlineCheckMask = getDeadlineCheckInterval() - 1;
+        mStopStatus = null;
+        mInitialMatrix = initialMatrix;
+        mStartMatrix = initialMatrix;
+        mPresolver = null;
+        if (mPresolve) {
+            presolve();
+        }
+        calculateMatrix();
+        stopMeasuringTime();
+        mStatus = isVerifiedSolution() ? SolveStatus.SOLVED
+                : mStopStatus != null ? mStopStatus : SolveStatus.UNSOLVABLE;
+        if (mMetrics == null) {
+            mMetrics = SearchMetrics.get(getClass().getSimpleName());
+        }
+        mMetrics.record(mCounters, System.nanoTime() - startNanos, mStatus == SolveStatus.SOLVED);
+        return this;
+    }
+
+    /**
+     * Solves the matrix within the budget, see {@link #solve(Matrix)}. When the budget is exhausted, the search stops
+     * and the calculated matrix holds the best board found so far, its error is given
+     * by {@link Matrix#getTotalError()} and the status is {@link SolveStatus#BUDGET_EXHAUSTED}.
+     *
+     * @param initialMatrix Matrix to be solved, of the length the search was created for.
+     * @param budget        Time and iteration limit of the solve
+     * @return This search holding the result.
+     */
+    @NotNull
+    public final LogicComparable solve(@NotNull final Matrix initialMatrix, @NotNull final SolveBudget budget) {
+        mHasDeadline = budget.hasTimeout();
+        mDeadline = System.nanoTime() + budget.getTimeoutNanos();
+        mIterationLimit = budget.getIterationLimit();
+        try {
+            return solve(initialMatrix);
+        } finally {
+            mHasDeadline = false;
+            mIterationLimit = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Counts one iteration of the main loop of the search and checks if the search should stop, because its thread
+     * was interrupted or its budget is exhausted. The reason is kept in {@link #mStopStatus}. The deadline is checked
+     * once in {@link #getDeadlineCheckInterval()} iterations.
+     *
+     * @return {@code true} if the search should stop
+     */
+    final boolean isStopRequested() {
+        if (Thread.currentThread().isInterrupted()) {
+            mStopStatus = SolveStatus.INTERRUPTED;
+            return true;
+        }
+        if (++mIterations > mIterationLimit
+                || (mIterations & mDeadlineCheckMask) == 0 && isDeadlinePassed()) {
+            mStopStatus = SolveStatus.BUDGET_EXHAUSTED;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks the deadline of the current solve without counting an iteration, e.g. by the workers of a parallel search.
+     *
+     * @return {@code true} if the solve has a deadline and it passed
+     */
+    final boolean isDeadlinePassed() {
+        return mHasDeadline && System.nanoTime() - mDeadline >= 0;
+    }
+
+    /**
+     * @return Rest of the time budget of the current solve, {@link SolveBudget#UNLIMITED} if it has no deadline.
+     */
+    @NotNull
+    final SolveBudget getRemainingBudget() {
+        return mHasDeadline ? SolveBudget.ofNanos(mDeadline - System.nanoTime()) : SolveBudget.UNLIMITED;
+    }
+
+    /**
+     * Number of the iterations between the checks of the deadline, a power of two. Searches with cheap iterations
+     * override it, so {@link System#nanoTime()} is not called in each of them.
+     *
+     * @return Check interval
+     */
+    int getDeadlineCheckInterval() {
+        return 1;
+    }
+
+    /**
+     * Checks the calculated matrix has no error and keeps all the values of the initial matrix.
+     *
+     * @return {@code true} if the calculated matrix solves the initial matrix
+     */
+    private boolean isVerifiedSolution() {
+        if (mSolvedMatrix == null || !mSolvedMatrix.isSolved()) {
+            return false;
+        }
+        int value;
+        for (int row = 0; row < mMatrixLength; row++) {
+            for (int column = 0; column < mMatrixLength; column++) {
+                value = mInitialMatrix.getValue(row, column);
+                if (value != 0 && mSolvedMatrix.getValue(row, column) != value) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Counters of the last solve.
+     */
+    @NotNull
+    public final SearchCounters getCounters() {
+        return mCounters;
+    }
+
+    /**
+     * @return Length of the matrices solved by this search.
+     */
+    public final int getMatrixLength() {
+        return mMatrixLength;
+    }
+
+    /**
+     * Reduces the initial matrix by constraint propagation, the search then starts from the reduced matrix and can use
+     * the candidates of the cells. To be called before matrix calculation.
+     */
+    void presolve() {
+        mPresolver = new Presolver(mInitialMatrix);
+        mStartMatrix = mPresolver.getReducedMatrix();
+    }
+
+    /**
+     * Returns the candidates of the cell. Without the presolver all the values are candidates.
+     *
+     * @param row
+     * @param column
+     * @return Bitmask of the candidates, bit {@code value - 1} is set for each candidate.
+     */
+    long getCandidates(final int row, final int column) {
+        return mPresolver == null ? CandidateMasks.getAllValuesMask(mMatrixLength) : mPresolver.getCandidates(row, column);
+    }
+
+    /**
+     * Checks if the search does not need to run, because the presolver already solved the matrix or found out
+     * it has no solution. The solved matrix is set to the start matrix then.
+     *
+     * @return {@code true} if the search can be skipped
+     */
+    boolean isSolvedByPresolver() {
+        if (mPresolver != null && (mStartMatrix.isSolved() || mPresolver.isContradiction())) {
+            resetSolvedMatrix();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the solved matrix to the reused work matrix, which is overwritten by the start matrix.
+     *
+     * @return Solved matrix to be changed by the search.
+     */
+    @NotNull
+    Matrix resetSolvedMatrix() {
+        if (mWorkMatrix == null) {
+            mWorkMatrix = new Matrix(mStartMatrix);
+        } else {
+            mWorkMatrix.copyFrom(mStartMatrix);
+        }
+        return mSolvedMatrix = mWorkMatrix;
     }
 
     /**
@@ -42,6 +310,14 @@ public abstract class AbstractSearch implements LogicComparable, MatrixConstants
         return mSolvedMatrix;
     }
 
+    /**
+     * @return Outcome of the last solve, {@code null} before the first one.
+     */
+    @Override
+    public final SolveStatus getStatus() {
+        return mStatus;
+    }
+
     /**
      * This default method returns the elapsed time.
      *
@@ -53,14 +329,14 @@ public abstract class AbstractSearch implements LogicComparable, MatrixConstants
     }
 
     /**
-     * Checks if given cell is not the initial one which cannot be changed.
+     * Checks if given cell is not the initial (or presolved) one which cannot be changed.
      *
      * @param row
      * @param column
      * @return {@code true} if the cell can be changed, otherwise {@code false}
      */
     boolean checkIfNotInitialValue(final int row, final int column) {
-        return mInitialMatrix.getValue(row, column) == 0 ? true : false;
+        return mStartMatrix.getValue(row, column) == 0 ? true : false;
     }
 
     /**
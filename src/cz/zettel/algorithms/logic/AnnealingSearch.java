@@ -0,0 +1,465 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class represents a simulated annealing search. It starts from a random fill where each square holds
+ * a permutation of its missing values, so the squares never have any conflict. Each move swaps two non-initial cells
+ * of a random square. The error is the number of values missing in the rows and columns, the occurrences of the values
+ * in each row and column are counted, so the error change of a swap is computed from a few counters in constant time.
+ * <p>
+ * A move which does not increase the error is always accepted, a worse move with probability
+ * {@code exp(-delta / temperature)}. The temperature is multiplied by the cooling rate after each level of moves.
+ * When the best error does not improve for a number of levels, the search is reheated to the initial temperature.
+ * <p>
+ * The whole state is a few arrays of the matrix size, so many searches can run in parallel. The search runs until
+ * the matrix is solved or the thread is interrupted, the best matrix found is calculated then.
+ */
+public class AnnealingSearch extends AbstractSearch {
+    private static final Logger log = LoggerFactory.getLogger(AnnealingSearch.class.getName());
+
+    /**
+     * Default factor multiplying the temperature after each level.
+     */
+    static final double COOLING_RATE = 0.99;
+    /**
+     * Default number of levels without improvement of the best error after which the search is reheated.
+     */
+    static final int REHEAT_THRESHOLD = 500;
+    /**
+     * Number of random moves sampled to compute the initial temperature.
+     */
+    private static final int TEMPERATURE_SAMPLES = 200;
+    /**
+     * The deadline of the solve is checked once in this number of moves, levels of large matrices take milliseconds.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final double mCoolingRate;
+    private final int mReheatThreshold;
+    /**
+     * Initial temperature and number of moves on each level, 0 if they are computed from each matrix.
+     */
+    private final double mInitialTemperature;
+    private final int mLevelLength;
+
+    /**
+     * Values of the cells and occurrences of each value in each row and column, indexed by
+     * {@code row * length + value - 1} (or column).
+     */
+    private final int[] mCells, mRowOccurrences, mColumnOccurrences;
+    /**
+     * Current error and the best error found.
+     */
+    private int mError, mBestError;
+    private final int[] mBestCells;
+    /**
+     * Non-initial cells of each square and their number.
+     */
+    private final int[][] mSquareFreeCells;
+    private final int[] mSquareFreeCounts;
+    /**
+     * Squares with at least two non-initial cells, the only squares which can be changed by a swap.
+     */
+    private final int[] mMutableSquares;
+    private int mMutableCount;
+    /**
+     * Buffers for the values missing in a square.
+     */
+    private final boolean[] mPresentValues;
+    private final int[] mMissingValues;
+    @NotNull
+    private final SplittableRandom mRandom = new SplittableRandom();
+    private long mMoveCount;
+    private int mReheatCount;
+
+    /**
+     * Default constructor.
+     *
+     * @param initialMatrix
+     */
+    public AnnealingSearch(@NotNull final Matrix initialMatrix) {
+        this(new Builder(initialMatrix));
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor used by the {@link Builder}, all the buffers are allocated here.
+     *
+     * @param builder configuration of the search
+     */
+    private AnnealingSearch(@NotNull final Builder builder) {
+        super(builder.mLength);
+        mInitialTemperature = builder.mInitialTemperature;
+        mCoolingRate = builder.mCoolingRate;
+        mLevelLength = builder.mLevelLength;
+        mReheatThreshold = builder.mReheatThreshold;
+        mPresolve = builder.mPresolve;
+        mCells = new int[mCellsCount];
+        mRowOccurrences = new int[mCellsCount];
+        mColumnOccurrences = new int[mCellsCount];
+        mBestCells = new int[mCellsCount];
+        mSquareFreeCells = new int[mMatrixLength][mMatrixLength];
+        mSquareFreeCounts = new int[mMatrixLength];
+        mMutableSquares = new int[mMatrixLength];
+        mPresentValues = new boolean[mMatrixLength + 1];
+        mMissingValues = new int[mMatrixLength];
+    }
+
+    /**
+     * Builder of the simulated annealing search. Parameters which are not set keep their default values, the search
+     * is done by {@link #build()}, or {@link #buildSolver()} creates a reusable search.
+     */
+    public static class Builder {
+        private final Matrix mInitialMatrix;
+        private final int mLength;
+        private boolean mPresolve;
+        private double mInitialTemperature;
+        private double mCoolingRate = COOLING_RATE;
+        private int mLevelLength;
+        private int mReheatThreshold = REHEAT_THRESHOLD;
+
+        /**
+         * Constructor.
+         *
+         * @param initialMatrix Matrix to be solved
+         */
+        public Builder(@NotNull final Matrix initialMatrix) {
+            mInitialMatrix = initialMatrix;
+            mLength = initialMatrix.getLength();
+        }
+
+        /**
+         * Constructor of the builder of a reusable search.
+         *
+         * @param length Length of the matrices to be solved
+         */
+        public Builder(final int length) {
+            mInitialMatrix = null;
+            mLength = length;
+        }
+
+        /**
+         * @param presolve {@code true} to reduce the matrix by the {@link Presolver} first
+         */
+        public Builder presolve(final boolean presolve) {
+            mPresolve = presolve;
+            return this;
+        }
+
+        /**
+         * @param initialTemperature Temperature of the start and of each reheating, 0 to use the standard deviation
+         *                           of the error of random moves
+         */
+        public Builder initialTemperature(final double initialTemperature) {
+            if (initialTemperature < 0) {
+                throw new IllegalArgumentException("Initial temperature must not be negative: " + initialTemperature);
+            }
+            mInitialTemperature = initialTemperature;
+            return this;
+        }
+
+        /**
+         * @param coolingRate Factor multiplying the temperature after each level, from 0 to 1 exclusive
+         */
+        public Builder coolingRate(final double coolingRate) {
+            if (coolingRate <= 0 || coolingRate >= 1) {
+                throw new IllegalArgumentException("Cooling rate must be from 0 to 1 exclusive: " + coolingRate);
+            }
+            mCoolingRate = coolingRate;
+            return this;
+        }
+
+        /**
+         * @param levelLength Number of moves on each temperature level, 0 to use the sum of squared numbers
+         *                    of the non-initial cells of the squares
+         */
+        public Builder levelLength(final int levelLength) {
+            if (levelLength < 0) {
+                throw new IllegalArgumentException("Level length must not be negative: " + levelLength);
+            }
+            mLevelLength = levelLength;
+            return this;
+        }
+
+        /**
+         * @param reheatThreshold Number of levels without improvement of the best error after which the search
+         *                        is reheated to the initial temperature
+         */
+        public Builder reheatThreshold(final int reheatThreshold) {
+            if (reheatThreshold < 1) {
+                throw new IllegalArgumentException("Reheat threshold must be positive: " + reheatThreshold);
+            }
+            mReheatThreshold = reheatThreshold;
+            return this;
+        }
+
+        /**
+         * Runs the search.
+         *
+         * @return finished search
+         */
+        @NotNull
+        public AnnealingSearch build() {
+            if (mInitialMatrix == null) {
+                throw new IllegalStateException("Builder of a reusable search has no matrix to solve");
+            }
+            final AnnealingSearch search = new AnnealingSearch(this);
+            search.solve(mInitialMatrix);
+            return search;
+        }
+
+        /**
+         * Creates a reusable search, the matrices are solved by {@link AnnealingSearch#solve(Matrix)}.
+         *
+         * @return new search
+         */
+        @NotNull
+        public AnnealingSearch buildSolver() {
+            return new AnnealingSearch(this);
+        }
+    }
+
+    @Override
+    void calculateMatrix() {
+        if (isSolvedByPresolver()) {
+            return;
+        }
+        resetSolvedMatrix();
+        mMoveCount = 0;
+        mReheatCount = 0;
+        if (hasConflictingInitialValues()) {
+            log.info("Matrix has no solution, initial values are in conflict.");
+            return;
+        }
+        findSquareFreeCells();
+        fillSquarePermutations();
+        mBestError = mError;
+        System.arraycopy(mCells, 0, mBestCells, 0, mCellsCount);
+        if (mMutableCount == 0) {
+            storeBest();
+            return;
+        }
+        final double initialTemperature = mInitialTemperature == 0 ? sampleTemperature() : mInitialTemperature;
+        int levelLength = mLevelLength;
+        if (levelLength == 0) {
+            for (int i = 0; i < mMutableCount; i++) {
+                levelLength += mSquareFreeCounts[mMutableSquares[i]] * mSquareFreeCounts[mMutableSquares[i]];
+            }
+        }
+        log.debug("Initial temperature {}, level length {}", initialTemperature, levelLength);
+
+        double temperature = initialTemperature;
+        int stagnatingLevels = 0, level = 0;
+        mCounters.recordBestError(level, mBestError);
+        while (mError > 0) {
+            if (isStopRequested()) {
+                log.info("Stopped: {}", mStopStatus);
+                break;
+            }
+            for (int i = 0; i < levelLength && mError > 0; i++) {
+                if (i % DEADLINE_CHECK_INTERVAL == DEADLINE_CHECK_INTERVAL - 1 && isDeadlinePassed()) {
+                    break;
+                }
+                move(temperature);
+                mMoveCount++;
+            }
+            level++;
+            if (mError < mBestError) {
+                mBestError = mError;
+                mCounters.recordBestError(level, mBestError);
+                System.arraycopy(mCells, 0, mBestCells, 0, mCellsCount);
+                stagnatingLevels = 0;
+            } else if (++stagnatingLevels > mReheatThreshold) {
+                temperature = initialTemperature;
+                stagnatingLevels = 0;
+                mReheatCount++;
+                log.debug("Search reheated, best error {}", mBestError);
+                continue;
+            }
+            temperature *= mCoolingRate;
+        }
+        mCounters.addGenerations(level);
+        mCounters.addRestarts(mReheatCount);
+        mCounters.addEvaluations(mMoveCount);
+        if (mError == 0) {
+            mBestError = 0;
+            mCounters.recordBestError(level, mBestError);
+            System.arraycopy(mCells, 0, mBestCells, 0, mCellsCount);
+            log.info("Matrix found !");
+        }
+        storeBest();
+    }
+
+    /**
+     * @return Number of moves tried by the search.
+     */
+    public long getMoveCount() {
+        return mMoveCount;
+    }
+
+    /**
+     * @return Number of reheatings of the search.
+     */
+    public int getReheatCount() {
+        return mReheatCount;
+    }
+
+    /**
+     * Swaps two random non-initial cells of a random square and reverts the swap if it is not accepted.
+     *
+     * @param temperature current temperature
+     */
+    private void move(final double temperature) {
+        final int square = mMutableSquares[mRandom.nextInt(mMutableCount)];
+        final int[] cells = mSquareFreeCells[square];
+        final int count = mSquareFreeCounts[square];
+        final int first = cells[mRandom.nextInt(count)];
+        int second = cells[mRandom.nextInt(count - 1)];
+        if (second == first) {
+            second = cells[count - 1];
+        }
+        final int error = mError;
+        swap(first, second);
+        final int delta = mError - error;
+        if (delta > 0 && mRandom.nextDouble() >= Math.exp(-delta / temperature)) {
+            swap(first, second);
+        }
+    }
+
+    /**
+     * Swaps the values of two cells and updates the occurrences and the error.
+     */
+    private void swap(final int first, final int second) {
+        final int firstValue = mCells[first];
+        final int secondValue = mCells[second];
+        remove(first, firstValue);
+        remove(second, secondValue);
+        add(first, secondValue);
+        add(second, firstValue);
+    }
+
+    /**
+     * Removes the value from the cell, the error increases for each unit where the value becomes missing.
+     */
+    private void remove(final int cell, final int value) {
+        if (--mRowOccurrences[cell / mMatrixLength * mMatrixLength + value - 1] == 0) mError++;
+        if (--mColumnOccurrences[cell % mMatrixLength * mMatrixLength + value - 1] == 0) mError++;
+    }
+
+    /**
+     * Places the value into the cell, the error decreases for each unit where the value was missing.
+     */
+    private void add(final int cell, final int value) {
+        mCells[cell] = value;
+        if (mRowOccurrences[cell / mMatrixLength * mMatrixLength + value - 1]++ == 0) mError--;
+        if (mColumnOccurrences[cell % mMatrixLength * mMatrixLength + value - 1]++ == 0) mError--;
+    }
+
+    /**
+     * Computes the initial temperature as the standard deviation of the error after random moves
+     * which are all accepted. The matrix is left in the state after the moves, which is as random as the initial fill.
+     */
+    private double sampleTemperature() {
+        double sum = 0, sumOfSquares = 0;
+        for (int i = 0; i < TEMPERATURE_SAMPLES; i++) {
+            move(Double.POSITIVE_INFINITY);
+            sum += mError;
+            sumOfSquares += (double) mError * mError;
+        }
+        final double mean = sum / TEMPERATURE_SAMPLES;
+        // a matrix where no move changes the error still needs some temperature to accept the worse moves later
+        return Math.max(1, Math.sqrt(Math.max(0, sumOfSquares / TEMPERATURE_SAMPLES - mean * mean)));
+    }
+
+    /**
+     * Checks if any initial value is repeated in its row, column or square, the search would never finish then.
+     */
+    private boolean hasConflictingInitialValues() {
+        for (int i = 0; i < mMatrixLength; i++) {
+            for (int j = 0; j < mMatrixLength; j++) {
+                if (mStartMatrix.getConflictCount(i, j) > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the non-initial cells of each square and the squares with at least two of them.
+     */
+    private void findSquareFreeCells() {
+        int freeCount, row, column;
+        mMutableCount = 0;
+        for (int square = 0; square < mMatrixLength; square++) {
+            freeCount = 0;
+            for (int k = 0; k < mMatrixLength; k++) {
+                row = square / mSquareLength * mSquareLength + k / mSquareLength;
+                column = square % mSquareLength * mSquareLength + k % mSquareLength;
+                if (checkIfNotInitialValue(row, column)) {
+                    mSquareFreeCells[square][freeCount++] = row * mMatrixLength + column;
+                }
+            }
+            mSquareFreeCounts[square] = freeCount;
+            if (freeCount > 1) {
+                mMutableSquares[mMutableCount++] = square;
+            }
+        }
+    }
+
+    /**
+     * Fills the non-initial cells of each square with a random permutation of the values missing in the square,
+     * and counts the occurrences and the error of the filled matrix.
+     */
+    private void fillSquarePermutations() {
+        Arrays.fill(mRowOccurrences, 0);
+        Arrays.fill(mColumnOccurrences, 0);
+        // all the values are missing in all the rows and columns of the empty matrix
+        mError = 2 * mCellsCount;
+        int valueCount, row, column, value, j, swap;
+        for (int square = 0; square < mMatrixLength; square++) {
+            Arrays.fill(mPresentValues, false);
+            for (int k = 0; k < mMatrixLength; k++) {
+                row = square / mSquareLength * mSquareLength + k / mSquareLength;
+                column = square % mSquareLength * mSquareLength + k % mSquareLength;
+                value = mStartMatrix.getValue(row, column);
+                if (value != EMPTY_VALUE) {
+                    mPresentValues[value] = true;
+                    add(row * mMatrixLength + column, value);
+                }
+            }
+            valueCount = 0;
+            for (int v = 1; v <= mMatrixLength; v++) {
+                if (!mPresentValues[v]) {
+                    mMissingValues[valueCount++] = v;
+                }
+            }
+            // Fisher-Yates shuffle
+            for (int i = valueCount - 1; i > 0; i--) {
+                j = mRandom.nextInt(i + 1);
+                swap = mMissingValues[i];
+                mMissingValues[i] = mMissingValues[j];
+                mMissingValues[j] = swap;
+            }
+            for (int i = 0; i < mSquareFreeCounts[square]; i++) {
+                add(mSquareFreeCells[square][i], mMissingValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the best cells found into the calculated matrix.
+     */
+    private void storeBest() {
+        for (int cell = 0; cell < mCellsCount; cell++) {
+            mSolvedMatrix.setValue(cell / mMatrixLength, cell % mMatrixLength, mBestCells[cell]);
+        }
+    }
+}
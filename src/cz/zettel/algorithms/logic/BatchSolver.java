@@ -0,0 +1,283 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.io.PuzzleLineFormat;
+import cz.zettel.algorithms.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * This class solves a stream of matrices in the one-line format of {@link PuzzleLineFormat} using all the threads
+ * of the pool. Lines are read by a separate thread and solved in parallel, the solutions are written in the order
+ * of the input. At most {@code windowSize} matrices are being solved or waiting to be written at any moment, the reader
+ * is blocked when the window is full, so the memory does not grow with the size of the input.
+ * Empty lines and lines starting with {@code #} are skipped. The threads are reused for all the batches until
+ * {@link #shutdown()} is called.
+ */
+public class BatchSolver {
+    private static final Logger log = LoggerFactory.getLogger(BatchSolver.class.getName());
+    private static final String COMMENT_PREFIX = "#";
+
+    /**
+     * Marks the end of the input in the queue of the pending results.
+     */
+    private static final Future<LogicComparable> END_OF_INPUT = CompletableFuture.completedFuture(null);
+
+    private final int mWindowSize;
+    @NotNull
+    private final ExecutorService mSolverService;
+    @NotNull
+    private final ExecutorService mReaderService;
+    @NotNull
+    private final Function<Matrix, LogicComparable> mStrategy;
+
+    /**
+     * Constructor.
+     *
+     * @param nThreads   Number of threads solving the matrices
+     * @param windowSize Maximum number of matrices read ahead of the written solutions
+     * @param strategy   Function creating the search which solves given matrix
+     */
+    public BatchSolver(@NotNull final int nThreads,
+                       @NotNull final int windowSize,
+                       @NotNull final Function<Matrix, LogicComparable> strategy) {
+        mWindowSize = windowSize;
+        mStrategy = strategy;
+        mSolverService = Executors.newFixedThreadPool(nThreads);
+        mReaderService = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Constructor of the batch solving the matrices by the reusable searches of the pool, so each thread creates
+     * its search only once. Only the solution is copied for each matrix, because it has to wait to be written
+     * in the order of the input.
+     *
+     * @param nThreads   Number of threads solving the matrices
+     * @param windowSize Maximum number of matrices read ahead of the written solutions
+     * @param solverPool Pool of the searches
+     */
+    public BatchSolver(@NotNull final int nThreads,
+                       @NotNull final int windowSize,
+                       @NotNull final SolverPool solverPool) {
+        this(nThreads, windowSize, new Function<Matrix, LogicComparable>() {
+            @Override
+            public LogicComparable apply(Matrix matrix) {
+                return SearchResult.copyOf(solverPool.solve(matrix));
+            }
+        });
+    }
+
+    /**
+     * Constructor of the batch answering the matrices equivalent to the already solved ones from the cache,
+     * the other matrices are solved by the reusable searches of the pool.
+     *
+     * @param nThreads      Number of threads solving the matrices
+     * @param windowSize    Maximum number of matrices read ahead of the written solutions
+     * @param solverPool    Pool of the searches
+     * @param solutionCache Cache of the solutions
+     */
+    public BatchSolver(@NotNull final int nThreads,
+                       @NotNull final int windowSize,
+                       @NotNull final SolverPool solverPool,
+                       @NotNull final SolutionCache solutionCache) {
+        this(nThreads, windowSize, solutionCache.wrap(new Function<Matrix, LogicComparable>() {
+            @Override
+            public LogicComparable apply(Matrix matrix) {
+                return SearchResult.copyOf(solverPool.solve(matrix));
+            }
+        }));
+    }
+
+    /**
+     * Reads all the matrices from the input, solves them and writes the solutions to the output, one line each.
+     * A matrix which was not solved is written as the best result found.
+     *
+     * @param input  source of the matrices
+     * @param output target of the solutions
+     * @return Report with the throughput and latencies.
+     * @throws IOException          if reading or writing fails or a line is not a valid matrix
+     * @throws InterruptedException if interrupted while solving
+     * @throws ExecutionException   if any search fails
+     */
+    public BatchReport solve(@NotNull final BufferedReader input, @NotNull final Writer output)
+            throws IOException, InterruptedException, ExecutionException {
+        final BlockingQueue<Future<LogicComparable>> pendingResults = new ArrayBlockingQueue<>(mWindowSize);
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicLong solvedCount = new AtomicLong();
+        final long startTime = System.nanoTime();
+        long count = 0;
+        boolean completed = false;
+        final Future<Long> readCount = mReaderService.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                try {
+                    return readAndSubmit(input, pendingResults, latencies);
+                } catch (IOException e) {
+                    // the batch fails, so the matrices still waiting in the window are not solved
+                    cancelPendingResults(pendingResults);
+                    throw e;
+                } finally {
+                    pendingResults.put(END_OF_INPUT);
+                }
+            }
+        });
+        try {
+
+            final StringBuilder line = new StringBuilder(Matrix.CELLS_COUNT);
+            Future<LogicComparable> pendingResult;
+            LogicComparable result;
+            while ((pendingResult = pendingResults.take()) != END_OF_INPUT) {
+                result = pendingResult.get();
+                if (result.getCalculatedMatrix().isSolved()) {
+                    solvedCount.incrementAndGet();
+                }
+                line.setLength(0);
+                output.append(PuzzleLineFormat.format(result.getCalculatedMatrix(), line)).append(System.lineSeparator());
+                count++;
+            }
+            // propagate failure of the reader
+            try {
+                readCount.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+            output.flush();
+            completed = true;
+        } finally {
+            if (!completed) {
+                readCount.cancel(true);
+                cancelPendingResults(pendingResults);
+            }
+        }
+        final BatchReport report = new BatchReport(count, solvedCount.get(), System.nanoTime() - startTime, latencies);
+        log.info("Batch finished: {}", report);
+        return report;
+    }
+
+    /**
+     * Reads the lines and submits one search for each matrix. Blocks when the window of pending results is full.
+     *
+     * @return Number of submitted matrices.
+     */
+    private long readAndSubmit(final BufferedReader input,
+                               final BlockingQueue<Future<LogicComparable>> pendingResults,
+                               final LatencyHistogram latencies) throws IOException, InterruptedException {
+        long count = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            final Matrix matrix;
+            try {
+                matrix = PuzzleLineFormat.parse(line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid matrix on line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            pendingResults.put(mSolverService.submit(new Callable<LogicComparable>() {
+                @Override
+                public LogicComparable call() throws Exception {
+                    final long startTime = System.nanoTime();
+                    final LogicComparable result = mStrategy.apply(matrix);
+                    latencies.record(System.nanoTime() - startTime);
+                    return result;
+                }
+            }));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Stops the threads, running searches are interrupted.
+     */
+    public void shutdown() {
+        mReaderService.shutdownNow();
+        mSolverService.shutdownNow();
+    }
+
+    /**
+     * Cancels the searches waiting in the window, so they do not occupy the threads after the batch failed.
+     */
+    private static void cancelPendingResults(final BlockingQueue<Future<LogicComparable>> pendingResults) {
+        final List<Future<LogicComparable>> cancelled = new ArrayList<>(pendingResults.size());
+        pendingResults.drainTo(cancelled);
+        for (Future<LogicComparable> pendingResult : cancelled) {
+            pendingResult.cancel(true);
+        }
+    }
+
+    /**
+     * Summary of one batch.
+     */
+    public static class BatchReport {
+        private final long mCount;
+        private final long mSolvedCount;
+        private final long mElapsedNanos;
+        @NotNull
+        private final LatencyHistogram mLatencies;
+
+        BatchReport(final long count, final long solvedCount, final long elapsedNanos,
+                    @NotNull final LatencyHistogram latencies) {
+            mCount = count;
+            mSolvedCount = solvedCount;
+            mElapsedNanos = elapsedNanos;
+            mLatencies = latencies;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSolvedCount() {
+            return mSolvedCount;
+        }
+
+        public long getElapsedTime() {
+            return mElapsedNanos / 1000000;
+        }
+
+        /**
+         * @return Number of matrices solved per second.
+         */
+        public double getThroughput() {
+            return mElapsedNanos == 0 ? 0 : mCount * 1e9 / mElapsedNanos;
+        }
+
+        /**
+         * @return Histogram of the solving time of the matrices in nanoseconds.
+         */
+        public LatencyHistogram getLatencies() {
+            return mLatencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d matrices (%d solved) in %dms, %.1f matrices/s, latency: %s",
+                    mCount, mSolvedCount, getElapsedTime(), getThroughput(), mLatencies.toMillisString());
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.entity.MatrixConstants;
+
+import java.util.Arrays;
+
+/**
+ * This class finds the canonical form of a matrix: the representative of all the matrices which are the same up to
+ * the symmetries keeping the solutions valid. The symmetries are permutations of the bands (groups of the rows
+ * of the squares) and of the rows within the bands, the same for the stacks and the columns, transposition
+ * and relabeling of the values. Equivalent matrices have the same {@link #getKey() key}, so a solution found for one
+ * of them is mapped to the others by {@link #fromCanonical(byte[])}.
+ * <p>
+ * Trying all the symmetries is not possible (more than 3 million layouts of the 9x9 matrix), so the rows and columns
+ * are first ordered by signatures which do not change under the symmetries: the number of the initial values
+ * of the row, refined several times by the signatures of the columns crossing the row at the initial values
+ * (and vice versa). Only the rows and columns with equal signatures are permuted, and for each layout the values
+ * are relabeled in the order of their first appearance. The lexicographically smallest result is the canonical form.
+ * The comparison of a layout stops at the first row greater than the best form, and all the layouts starting by
+ * the same rows are skipped. The buffers are kept for each thread, so a lookup allocates only the result.
+ * When there are more than {@link #MAX_LAYOUTS} layouts to try in both orientations (e.g. almost empty or full
+ * matrices), the matrix is only relabeled, its key is still valid, but it is equal only for the matrices differing
+ * by the values.
+ */
+public final class CanonicalForm implements MatrixConstants {
+
+    /**
+     * Maximal number of the layouts tried in one orientation.
+     */
+    static final int MAX_LAYOUTS = 512;
+    /**
+     * Number of the refinements of the signatures by the signatures of the crossing rows or columns.
+     */
+    private static final int SIGNATURE_ROUNDS = 3;
+    /**
+     * Buffers of the current thread, a new one is created when the thread gets a matrix of another length.
+     */
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<>();
+
+    private final int mLength;
+    @NotNull
+    private final String mKey;
+    private final boolean mTransposed;
+    /**
+     * Row and column of the oriented matrix placed at each row and column of the canonical form.
+     */
+    @NotNull
+    private final int[] mRowOrder, mColumnOrder;
+    /**
+     * Canonical value of each value of the matrix and the inverse mapping.
+     */
+    @NotNull
+    private final int[] mLabels, mValues;
+
+    private CanonicalForm(final int length, @NotNull final byte[] cells, @NotNull final char[] key,
+                          final boolean transposed, @NotNull final int[] rowOrder, @NotNull final int[] columnOrder) {
+        mLength = length;
+        mKey = new String(key);
+        mTransposed = transposed;
+        mRowOrder = rowOrder;
+        mColumnOrder = columnOrder;
+        mLabels = new int[mLength + 1];
+        mValues = new int[mLength + 1];
+        int label = relabel(cells, length, rowOrder, 0, columnOrder, 0, mLabels, null, null);
+        // the values missing in the matrix are free to be labeled in any order
+        for (int value = 1; value <= mLength; value++) {
+            if (mLabels[value] == EMPTY_VALUE) {
+                mLabels[value] = ++label;
+            }
+        }
+        for (int value = 1; value <= mLength; value++) {
+            mValues[mLabels[value]] = value;
+        }
+    }
+
+    /**
+     * Finds the canonical form of the matrix.
+     *
+     * @param matrix Matrix with the initial values
+     * @return Canonical form and the mapping to it.
+     */
+    @NotNull
+    public static CanonicalForm of(@NotNull final Matrix matrix) {
+        final int length = matrix.getLength();
+        Scratch scratch = SCRATCH.get();
+        if (scratch == null || scratch.mLength != length) {
+            scratch = new Scratch(length, matrix.getSquareLength());
+            SCRATCH.set(scratch);
+        }
+        final byte[] cells = scratch.mCells;
+        final char[] best = scratch.mBest;
+        final int[] labels = scratch.mLabels;
+        final int[] rowOrders = scratch.mRowOrders;
+        final int[] columnOrders = scratch.mColumnOrders;
+        final int[] bestRows = scratch.mBestRows;
+        final int[] bestColumns = scratch.mBestColumns;
+        boolean found = false, bestTransposed = false;
+        int result;
+        for (int orientation = 0; orientation < 2; orientation++) {
+            final boolean transposed = orientation == 1;
+            orient(matrix, transposed, cells);
+            if (!scratch.findLayouts()) {
+                continue;
+            }
+            for (int column = 0; column < scratch.mColumnOrderCount; column++) {
+                int row = 0;
+                while (row < scratch.mRowOrderCount) {
+                    Arrays.fill(labels, EMPTY_VALUE);
+                    result = relabel(cells, length, rowOrders, row * length, columnOrders, column * length, labels,
+                            scratch.mCandidate, found ? best : null);
+                    if (result < 0) {
+                        row = skipLayouts(rowOrders, row, scratch.mRowOrderCount, length, -result);
+                        continue;
+                    }
+                    System.arraycopy(scratch.mCandidate, 0, best, 0, best.length);
+                    System.arraycopy(rowOrders, row * length, bestRows, 0, length);
+                    System.arraycopy(columnOrders, column * length, bestColumns, 0, length);
+                    bestTransposed = transposed;
+                    found = true;
+                    row++;
+                }
+            }
+        }
+        orient(matrix, bestTransposed, cells);
+        if (!found) {
+            // too many layouts in both orientations, only the values are relabeled
+            for (int i = 0; i < length; i++) {
+                bestRows[i] = i;
+                bestColumns[i] = i;
+            }
+            Arrays.fill(labels, EMPTY_VALUE);
+            relabel(cells, length, bestRows, 0, bestColumns, 0, labels, best, null);
+        }
+        return new CanonicalForm(length, cells, best, bestTransposed, bestRows.clone(), bestColumns.clone());
+    }
+
+    /**
+     * Returns the key which is equal for all the matrices with the same canonical form. It is the canonical matrix
+     * with one character for each cell.
+     *
+     * @return Key of the matrix.
+     */
+    @NotNull
+    public String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Maps a solution of the matrix to the canonical form.
+     *
+     * @param solution Solved matrix
+     * @return Values of the canonical solution row by row.
+     */
+    @NotNull
+    public byte[] toCanonical(@NotNull final Matrix solution) {
+        final byte[] cells = new byte[mLength * mLength];
+        for (int i = 0; i < mLength; i++) {
+            for (int j = 0; j < mLength; j++) {
+                cells[i * mLength + j] = (byte) mLabels[getValue(solution, mTransposed, mRowOrder[i], mColumnOrder[j])];
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Maps a solution of the canonical form back to the matrix.
+     *
+     * @param cells Values of the canonical solution row by row, see {@link #toCanonical(Matrix)}
+     * @return Solution of the matrix.
+     */
+    @NotNull
+    public Matrix fromCanonical(@NotNull final byte[] cells) {
+        final int[][] values = new int[mLength][mLength];
+        for (int i = 0; i < mLength; i++) {
+            for (int j = 0; j < mLength; j++) {
+                final int value = mValues[cells[i * mLength + j]];
+                if (mTransposed) {
+                    values[mColumnOrder[j]][mRowOrder[i]] = value;
+                } else {
+                    values[mRowOrder[i]][mColumnOrder[j]] = value;
+                }
+            }
+        }
+        return new Matrix(values);
+    }
+
+    /**
+     * Relabels the values of the matrix in the given layout in the order of their first appearance and compares
+     * the result to the best form found so far. The comparison stops as soon as the result is greater.
+     *
+     * @param cells   Values of the oriented matrix row by row
+     * @param labels  Labels of the values, filled by the values appearing in the matrix
+     * @param result  Canonical values of the cells, {@code null} to fill only the labels
+     * @param best    Best form to be compared, {@code null} if there is none yet
+     * @return Number of the labeled values, or the negative number of the rows compared if the result is not smaller
+     * than the best form.
+     */
+    private static int relabel(final byte[] cells, final int length, final int[] rowOrders, final int rowOffset,
+                               final int[] columnOrders, final int columnOffset, final int[] labels,
+                               final char[] result, final char[] best) {
+        int label = 0;
+        boolean isSmaller = best == null;
+        for (int i = 0; i < length; i++) {
+            final int rowStart = rowOrders[rowOffset + i] * length;
+            for (int j = 0; j < length; j++) {
+                final int value = cells[rowStart + columnOrders[columnOffset + j]];
+                if (value != EMPTY_VALUE && labels[value] == EMPTY_VALUE) {
+                    labels[value] = ++label;
+                }
+                if (result == null) {
+                    continue;
+                }
+                final char cell = (char) labels[value];
+                if (!isSmaller) {
+                    if (cell > best[i * length + j]) {
+                        return -(i + 1);
+                    }
+                    isSmaller = cell < best[i * length + j];
+                }
+                result[i * length + j] = cell;
+            }
+        }
+        return isSmaller ? label : -length;
+    }
+
+    /**
+     * Skips the row orders starting by the same rows as the rejected one. The rows up to the first greater row are
+     * relabeled to the same values, so these layouts are greater than the best form as well.
+     *
+     * @param order  Rejected row order
+     * @param prefix Number of the rows compared before the rejection
+     * @return Next row order to be tried.
+     */
+    private static int skipLayouts(final int[] rowOrders, final int order, final int orderCount, final int length,
+                                   final int prefix) {
+        int next = order + 1;
+        while (next < orderCount && hasPrefix(rowOrders, order * length, next * length, prefix)) {
+            next++;
+        }
+        return next;
+    }
+
+    private static boolean hasPrefix(final int[] orders, final int offset, final int otherOffset, final int prefix) {
+        for (int i = 0; i < prefix; i++) {
+            if (orders[offset + i] != orders[otherOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the values of the matrix, or of the transposed matrix, row by row.
+     */
+    private static void orient(final Matrix matrix, final boolean transposed, final byte[] cells) {
+        final int length = matrix.getLength();
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                cells[i * length + j] = (byte) getValue(matrix, transposed, i, j);
+            }
+        }
+    }
+
+    private static void swap(final int[] array, final int i, final int j) {
+        final int value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+
+    /**
+     * Scrambles the bits of the signature, so the sums of the signatures of the crossing units differ
+     * for different sets of the units.
+     */
+    private static long mix(final long signature) {
+        long bits = signature * 0x9E3779B97F4A7C15L;
+        bits ^= bits >>> 31;
+        bits *= 0xBF58476D1CE4E5B9L;
+        return bits ^ bits >>> 29;
+    }
+
+    private static int getValue(final Matrix matrix, final boolean transposed, final int row, final int column) {
+        return transposed ? matrix.getValue(column, row) : matrix.getValue(row, column);
+    }
+
+    /**
+     * Buffers of {@link #of(Matrix)} reused by each thread, the layouts of the rows and columns are kept in flat
+     * arrays, one order after another.
+     */
+    private static final class Scratch {
+        private final int mLength;
+        private final int mSquareLength;
+        /**
+         * Values of the oriented matrix, the best form found so far and the form being compared to it.
+         */
+        @NotNull
+        private final byte[] mCells;
+        @NotNull
+        private final char[] mBest, mCandidate;
+        @NotNull
+        private final int[] mLabels;
+        @NotNull
+        private final int[] mRowOrders, mColumnOrders, mBestRows, mBestColumns;
+        private int mRowOrderCount, mColumnOrderCount;
+        /**
+         * Signatures of the rows and columns and their next refinement.
+         */
+        @NotNull
+        private long[] mRowSignatures, mColumnSignatures, mNextRowSignatures, mNextColumnSignatures;
+        @NotNull
+        private final long[] mGroupSignatures;
+        /**
+         * Groups (bands or stacks) sorted by the signatures and the units of each group sorted by the signatures.
+         * Each position holds the end of the range of the positions with the same signature.
+         */
+        @NotNull
+        private final int[] mGroups, mGroupTieEnds, mUnits, mUnitTieEnds;
+        /**
+         * Order being built and the target of the finished orders.
+         */
+        @NotNull
+        private final int[] mOrder;
+        private int[] mOrders;
+        private int mOrderCount;
+
+        private Scratch(final int length, final int squareLength) {
+            mLength = length;
+            mSquareLength = squareLength;
+            mCells = new byte[length * length];
+            mBest = new char[length * length];
+            mCandidate = new char[length * length];
+            mLabels = new int[length + 1];
+            mRowOrders = new int[MAX_LAYOUTS * length];
+            mColumnOrders = new int[MAX_LAYOUTS * length];
+            mBestRows = new int[length];
+            mBestColumns = new int[length];
+            mRowSignatures = new long[length];
+            mColumnSignatures = new long[length];
+            mNextRowSignatures = new long[length];
+            mNextColumnSignatures = new long[length];
+            mGroupSignatures = new long[squareLength];
+            mGroups = new int[squareLength];
+            mGroupTieEnds = new int[squareLength];
+            mUnits = new int[length];
+            mUnitTieEnds = new int[length];
+            mOrder = new int[length];
+        }
+
+        /**
+         * Finds all the orders of the rows and of the columns of {@link #mCells} which are sorted by their signatures.
+         *
+         * @return {@code false} if there are more than {@link #MAX_LAYOUTS} layouts.
+         */
+        private boolean findLayouts() {
+            Arrays.fill(mRowSignatures, 0);
+            Arrays.fill(mColumnSignatures, 0);
+            for (int i = 0; i < mLength; i++) {
+                for (int j = 0; j < mLength; j++) {
+                    if (mCells[i * mLength + j] != EMPTY_VALUE) {
+                        mRowSignatures[i]++;
+                        mColumnSignatures[j]++;
+                    }
+                }
+            }
+            long[] swap;
+            for (int round = 0; round < SIGNATURE_ROUNDS; round++) {
+                for (int i = 0; i < mLength; i++) {
+                    mNextRowSignatures[i] = mix(mRowSignatures[i]);
+                    mNextColumnSignatures[i] = mix(mColumnSignatures[i]);
+                }
+                for (int i = 0; i < mLength; i++) {
+                    for (int j = 0; j < mLength; j++) {
+                        if (mCells[i * mLength + j] != EMPTY_VALUE) {
+                            mNextRowSignatures[i] += mix(mColumnSignatures[j] + round);
+                            mNextColumnSignatures[j] += mix(mRowSignatures[i] + round);
+                        }
+                    }
+                }
+                swap = mRowSignatures;
+                mRowSignatures = mNextRowSignatures;
+                mNextRowSignatures = swap;
+                swap = mColumnSignatures;
+                mColumnSignatures = mNextColumnSignatures;
+                mNextColumnSignatures = swap;
+            }
+            if (countLayouts(mRowSignatures) * countLayouts(mColumnSignatures) > MAX_LAYOUTS) {
+                return false;
+            }
+            mRowOrderCount = addLayouts(mRowSignatures, mRowOrders);
+            mColumnOrderCount = addLayouts(mColumnSignatures, mColumnOrders);
+            return true;
+        }
+
+        /**
+         * @return Number of the orders of the units sorted by the signatures, at most {@link #MAX_LAYOUTS} + 1.
+         */
+        private long countLayouts(final long[] signatures) {
+            sortGroups(signatures);
+            long count = countTies(mGroupTieEnds, 0, mSquareLength);
+            for (int group = 0; group < mSquareLength && count <= MAX_LAYOUTS; group++) {
+                count *= countTies(mUnitTieEnds, group * mSquareLength, mSquareLength);
+            }
+            return Math.min(count, MAX_LAYOUTS + 1);
+        }
+
+        /**
+         * Adds all the orders of the units where the groups (bands or stacks) are sorted by the sums of the signatures
+         * and the units within each group by their signatures. The units with equal signatures are in all the orders.
+         * The orders starting by the same units follow each other.
+         *
+         * @return Number of the orders.
+         */
+        private int addLayouts(final long[] signatures, final int[] orders) {
+            sortGroups(signatures);
+            mOrders = orders;
+            mOrderCount = 0;
+            placeGroup(0);
+            return mOrderCount;
+        }
+
+        /**
+         * Sorts the groups by the sums of the signatures and the units of each group by the signatures.
+         */
+        private void sortGroups(final long[] signatures) {
+            Arrays.fill(mGroupSignatures, 0);
+            for (int i = 0; i < mLength; i++) {
+                mGroupSignatures[i / mSquareLength] += signatures[i];
+            }
+            sortIndices(mGroupSignatures, 0, mSquareLength, mGroups, mGroupTieEnds);
+            for (int group = 0; group < mSquareLength; group++) {
+                sortIndices(signatures, group * mSquareLength, mSquareLength, mUnits, mUnitTieEnds);
+            }
+        }
+
+        /**
+         * Places each group of the tie at the position, the tie is permuted in place.
+         */
+        private void placeGroup(final int position) {
+            if (position == mSquareLength) {
+                System.arraycopy(mOrder, 0, mOrders, mOrderCount * mLength, mLength);
+                mOrderCount++;
+                return;
+            }
+            for (int i = position; i < mGroupTieEnds[position]; i++) {
+                swap(mGroups, position, i);
+                placeUnit(position, 0);
+                swap(mGroups, position, i);
+            }
+        }
+
+        /**
+         * Places each unit of the tie within the group at the position, the tie is permuted in place.
+         */
+        private void placeUnit(final int position, final int unit) {
+            if (unit == mSquareLength) {
+                placeGroup(position + 1);
+                return;
+            }
+            final int index = mGroups[position] * mSquareLength + unit;
+            for (int i = index; i < mUnitTieEnds[index]; i++) {
+                swap(mUnits, index, i);
+                mOrder[position * mSquareLength + unit] = mUnits[index];
+                placeUnit(position, unit + 1);
+                swap(mUnits, index, i);
+            }
+        }
+
+        /**
+         * Sorts the indices from the offset by the descending signatures and finds the ranges of the equal ones.
+         */
+        private static void sortIndices(final long[] signatures, final int offset, final int count,
+                                        final int[] indices, final int[] tieEnds) {
+            for (int i = 0; i < count; i++) {
+                int position = offset + i;
+                while (position > offset && signatures[indices[position - 1]] < signatures[offset + i]) {
+                    indices[position] = indices[position - 1];
+                    position--;
+                }
+                indices[position] = offset + i;
+            }
+            int end = offset + count;
+            for (int i = end - 1; i >= offset; i--) {
+                if (i + 1 < offset + count && signatures[indices[i]] != signatures[indices[i + 1]]) {
+                    end = i + 1;
+                }
+                tieEnds[i] = end;
+            }
+        }
+
+        /**
+         * @return Number of the permutations of the sorted indices keeping the signatures sorted.
+         */
+        private static long countTies(final int[] tieEnds, final int offset, final int count) {
+            long result = 1;
+            int tie = 1;
+            for (int i = offset + 1; i < offset + count; i++) {
+                tie = tieEnds[i] == tieEnds[i - 1] ? tie + 1 : 1;
+                result *= tie;
+            }
+            return result;
+        }
+    }
+}
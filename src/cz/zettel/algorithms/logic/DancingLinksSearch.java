@@ -0,0 +1,194 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class solves the matrix as an exact cover problem by Knuth's Algorithm X with Dancing Links.
+ * The initial values select their rows of the {@link ExactCoverMatrix} first, then the search always branches on
+ * the column with the fewest rows left. The recursion is replaced by an explicit stack of the chosen rows.
+ * <p>
+ * The {@link ExactCoverMatrix} is created by the first search and reset before each next one, so a reusable search
+ * (one per thread, e.g. by the {@link SolverPool}) does not allocate after its first search. The search stops
+ * when the thread is interrupted, the calculated matrix is left unfinished then.
+ */
+public class DancingLinksSearch extends AbstractSearch {
+    private static final Logger log = LoggerFactory.getLogger(DancingLinksSearch.class.getName());
+
+    /**
+     * Links of the exact cover problem, reused by each search.
+     */
+    private ExactCoverMatrix mExactCover;
+    /**
+     * Stack of the row nodes chosen by the search.
+     */
+    private final int[] mChosenNodes = new int[mCellsCount];
+
+    public DancingLinksSearch(@NotNull final Matrix initialMatrix) {
+        super(initialMatrix);
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param initialMatrix
+     * @param presolve      {@code true} to reduce the matrix by the {@link Presolver} first
+     */
+    public DancingLinksSearch(@NotNull final Matrix initialMatrix, final boolean presolve) {
+        super(initialMatrix);
+        mPresolve = presolve;
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor of a reusable search, the matrices are solved by {@link #solve(Matrix)}.
+     *
+     * @param length   Length of the matrices to be solved
+     * @param presolve {@code true} to reduce each matrix by the {@link Presolver} first
+     */
+    public DancingLinksSearch(final int length, final boolean presolve) {
+        super(length);
+        mPresolve = presolve;
+    }
+
+    @Override
+    int getDeadlineCheckInterval() {
+        return BACKTRACKING_DEADLINE_CHECK_INTERVAL;
+    }
+
+    @Override
+    void calculateMatrix() {
+        if (isSolvedByPresolver()) {
+            return;
+        }
+        resetSolvedMatrix();
+        if (mExactCover == null) {
+            mExactCover = new ExactCoverMatrix(mMatrixLength);
+        } else {
+            mExactCover.reset();
+        }
+        final ExactCoverMatrix exactCover = mExactCover;
+
+        if (!selectInitialValues(exactCover)) {
+            log.info("Matrix has no solution.");
+            return;
+        }
+
+        int depth = 0, column, node;
+        boolean solved = false;
+        search:
+        while (true) {
+            if (isStopRequested()) {
+                log.info("Stopped: {}", mStopStatus);
+                break;
+            }
+            if (exactCover.mRight[ExactCoverMatrix.ROOT] == ExactCoverMatrix.ROOT) {
+                solved = true;
+                break;
+            }
+            column = chooseColumn(exactCover);
+            mCounters.addCheck();
+            if (exactCover.mSize[column] > 0) {
+                // branch on the first row of the column
+                exactCover.cover(column);
+                node = exactCover.mDown[column];
+                mChosenNodes[depth++] = node;
+                coverRow(exactCover, node);
+                mCounters.addNode();
+                continue;
+            }
+            // backtrack to the last choice which has another row to try
+            while (depth > 0) {
+                node = mChosenNodes[--depth];
+                column = exactCover.mColumn[node];
+                uncoverRow(exactCover, node);
+                mCounters.addBacktrack();
+                node = exactCover.mDown[node];
+                if (node != column) {
+                    mChosenNodes[depth++] = node;
+                    coverRow(exactCover, node);
+                    mCounters.addNode();
+                    continue search;
+                }
+                exactCover.uncover(column);
+            }
+            log.info("Matrix has no solution.");
+            break;
+        }
+
+        if (solved) {
+            int rowId;
+            for (int i = 0; i < depth; i++) {
+                rowId = exactCover.getRowId(mChosenNodes[i]);
+                mSolvedMatrix.setValue(rowId / mCellsCount, rowId / mMatrixLength % mMatrixLength,
+                        rowId % mMatrixLength + 1);
+            }
+        }
+    }
+
+    /**
+     * Selects the rows of all the non-empty cells of the start matrix.
+     *
+     * @return {@code false} if the values conflict with each other
+     */
+    private boolean selectInitialValues(final ExactCoverMatrix exactCover) {
+        int node, value;
+        for (int i = 0; i < mMatrixLength; i++) {
+            for (int j = 0; j < mMatrixLength; j++) {
+                value = mStartMatrix.getValue(i, j);
+                if (value == EMPTY_VALUE) {
+                    continue;
+                }
+                node = exactCover.getFirstNode(exactCover.getRowId(i, j, value));
+                // all the columns of the row must be still uncovered
+                int k = node;
+                do {
+                    if (exactCover.isCovered(exactCover.mColumn[k])) {
+                        return false;
+                    }
+                    k = exactCover.mRight[k];
+                } while (k != node);
+                exactCover.cover(exactCover.mColumn[node]);
+                coverRow(exactCover, node);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the uncovered column with the fewest rows.
+     */
+    private static int chooseColumn(final ExactCoverMatrix exactCover) {
+        int bestColumn = exactCover.mRight[ExactCoverMatrix.ROOT];
+        for (int column = exactCover.mRight[bestColumn]; column != ExactCoverMatrix.ROOT; column = exactCover.mRight[column]) {
+            if (exactCover.mSize[column] < exactCover.mSize[bestColumn]) {
+                bestColumn = column;
+                if (exactCover.mSize[bestColumn] <= 1) {
+                    break;
+                }
+            }
+        }
+        return bestColumn;
+    }
+
+    /**
+     * Covers all the other columns of the row of the node.
+     */
+    private static void coverRow(final ExactCoverMatrix exactCover, final int node) {
+        for (int j = exactCover.mRight[node]; j != node; j = exactCover.mRight[j]) {
+            exactCover.cover(exactCover.mColumn[j]);
+        }
+    }
+
+    /**
+     * Reverts {@link #coverRow(ExactCoverMatrix, int)}.
+     */
+    private static void uncoverRow(final ExactCoverMatrix exactCover, final int node) {
+        for (int j = exactCover.mLeft[node]; j != node; j = exactCover.mLeft[j]) {
+            exactCover.uncover(exactCover.mColumn[j]);
+        }
+    }
+}
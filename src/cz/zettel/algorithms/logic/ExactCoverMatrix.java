@@ -0,0 +1,159 @@
+package cz.zettel.algorithms.logic;
+
+/**
+ * This class holds the Sudoku exact cover problem for the Dancing Links algorithm. It has 4 columns (constraints)
+ * per cell: each cell has a value, each row, column and square has each value. Each row is one candidate
+ * (cell and value) and covers 4 columns, e.g. the standard matrix has 324 columns and 729 rows.
+ * <p>
+ * All the nodes are stored in preallocated primitive arrays indexed by node number instead of linked objects.
+ * Node 0 is the root, nodes from 1 are the column headers, each row has 4 consecutive nodes after them.
+ * {@link #reset()} restores all the links in place, so the same instance can be used for any number of searches
+ * without allocation.
+ */
+class ExactCoverMatrix {
+
+    static final int ROOT = 0;
+    private static final int NODES_PER_ROW = 4;
+
+    /**
+     * Length of the matrix and of its squares, number of its cells.
+     */
+    private final int mLength, mSquareLength, mCellsCount;
+    private final int mColumnCount, mRowCount, mFirstRowNode;
+
+    /**
+     * Links to the left, right, up and down neighbour node.
+     */
+    final int[] mLeft;
+    final int[] mRight;
+    final int[] mUp;
+    final int[] mDown;
+    /**
+     * Column header of each node.
+     */
+    final int[] mColumn;
+    /**
+     * Number of the nodes in each column, indexed by the column header node.
+     */
+    final int[] mSize;
+
+    /**
+     * Constructor.
+     *
+     * @param length length of the matrix
+     */
+    ExactCoverMatrix(final int length) {
+        mLength = length;
+        mSquareLength = (int) Math.round(Math.sqrt(length));
+        mCellsCount = length * length;
+        mColumnCount = 4 * mCellsCount;
+        mRowCount = mCellsCount * length;
+        mFirstRowNode = mColumnCount + 1;
+        final int nodeCount = mFirstRowNode + mRowCount * NODES_PER_ROW;
+        mLeft = new int[nodeCount];
+        mRight = new int[nodeCount];
+        mUp = new int[nodeCount];
+        mDown = new int[nodeCount];
+        mColumn = new int[nodeCount];
+        mSize = new int[mColumnCount + 1];
+        reset();
+    }
+
+    /**
+     * Links all the nodes into the complete exact cover matrix.
+     */
+    void reset() {
+        for (int header = 0; header <= mColumnCount; header++) {
+            mLeft[header] = header == ROOT ? mColumnCount : header - 1;
+            mRight[header] = header == mColumnCount ? ROOT : header + 1;
+            mUp[header] = header;
+            mDown[header] = header;
+            mColumn[header] = header;
+            mSize[header] = 0;
+        }
+        int row, column, value, square, node;
+        for (int rowId = 0; rowId < mRowCount; rowId++) {
+            row = rowId / mCellsCount;
+            column = rowId / mLength % mLength;
+            value = rowId % mLength;
+            square = row / mSquareLength * mSquareLength + column / mSquareLength;
+            node = getFirstNode(rowId);
+            appendNode(node, 1 + row * mLength + column);
+            appendNode(node + 1, 1 + mCellsCount + row * mLength + value);
+            appendNode(node + 2, 1 + 2 * mCellsCount + column * mLength + value);
+            appendNode(node + 3, 1 + 3 * mCellsCount + square * mLength + value);
+            for (int k = 0; k < NODES_PER_ROW; k++) {
+                mLeft[node + k] = node + (k + NODES_PER_ROW - 1) % NODES_PER_ROW;
+                mRight[node + k] = node + (k + 1) % NODES_PER_ROW;
+            }
+        }
+    }
+
+    /**
+     * @return Row of the candidate value of the cell.
+     */
+    int getRowId(final int row, final int column, final int value) {
+        return (row * mLength + column) * mLength + value - 1;
+    }
+
+    int getFirstNode(final int rowId) {
+        return mFirstRowNode + rowId * NODES_PER_ROW;
+    }
+
+    /**
+     * @return Row of the node.
+     */
+    int getRowId(final int node) {
+        return (node - mFirstRowNode) / NODES_PER_ROW;
+    }
+
+    /**
+     * Removes the column from the header list and all the rows covering it from the other columns.
+     *
+     * @param column column header node
+     */
+    void cover(final int column) {
+        mRight[mLeft[column]] = mRight[column];
+        mLeft[mRight[column]] = mLeft[column];
+        for (int i = mDown[column]; i != column; i = mDown[i]) {
+            for (int j = mRight[i]; j != i; j = mRight[j]) {
+                mDown[mUp[j]] = mDown[j];
+                mUp[mDown[j]] = mUp[j];
+                mSize[mColumn[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Reverts {@link #cover(int)}, the columns must be uncovered in the reverse order.
+     *
+     * @param column column header node
+     */
+    void uncover(final int column) {
+        for (int i = mUp[column]; i != column; i = mUp[i]) {
+            for (int j = mLeft[i]; j != i; j = mLeft[j]) {
+                mSize[mColumn[j]]++;
+                mDown[mUp[j]] = j;
+                mUp[mDown[j]] = j;
+            }
+        }
+        mRight[mLeft[column]] = column;
+        mLeft[mRight[column]] = column;
+    }
+
+    /**
+     * Checks if the column is still in the header list.
+     */
+    boolean isCovered(final int column) {
+        return mRight[mLeft[column]] != column;
+    }
+
+    private void appendNode(final int node, final int column) {
+        mColumn[node] = column;
+        mUp[node] = mUp[column];
+        mDown[node] = column;
+        mDown[mUp[column]] = node;
+        mUp[column] = node;
+        mSize[column]++;
+    }
+}
@@ -6,54 +6,139 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.*;
 
+/**
+ * This class runs several searches of the same matrix in a long-lived thread pool and returns the first solution.
+ * The pool is reused for all the searches until {@link #shutdown()} is called. The result is delivered as soon as
+ * the first search completes with a solved matrix, the remaining searches are cancelled by interrupting their threads.
+ */
 public class ExecutorServiceWrapper {
-    private static final Logger log = LoggerFactory.getLogger(ExecutorService.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(ExecutorServiceWrapper.class.getName());
     private final ExecutorService mExecutorService;
-    private List<Future<LogicComparable>> mFuturesList;
+    private final int mThreadCount;
+    private CompletionService<LogicComparable> mCompletionService;
+    private final List<Future<LogicComparable>> mFuturesList = new ArrayList<>();
 
 
     public ExecutorServiceWrapper(@NotNull final int nThreads) {
+        mThreadCount = nThreads;
         mExecutorService = Executors.newFixedThreadPool(nThreads);
     }
 
+    /**
+     * Submits one genetic search for each thread of the pool.
+     *
+     * @param matrixInitial  Matrix to be solved
+     * @param populationSize Size of initial population
+     * @param elitismRatio   Elitism Ratio
+     */
     public void submitGeneticCallables(@NotNull final Matrix matrixInitial,
                                        @NotNull final int populationSize,
-                                       @NotNull final float elitismRatio) throws InterruptedException {
-        Collection<Callable<LogicComparable>> callables = new ArrayList<>();
-        mFuturesList = mExecutorService.invokeAll(callables);
-        for (int i = 0; i < ((ThreadPoolExecutor) mExecutorService).getCorePoolSize(); i++) {
-            final Callable<LogicComparable> callable = new Callable<LogicComparable>() {
+                                       @NotNull final float elitismRatio) {
+        for (int i = 0; i < mThreadCount; i++) {
+            submitCallable(new Callable<LogicComparable>() {
                 @Override
                 public LogicComparable call() throws Exception {
                     log.info("Starting thread: {}", Thread.currentThread().getName());
-                    GeneticSearch geneticSearch = new GeneticSearch(matrixInitial, populationSize, elitismRatio);
-                    return geneticSearch;
+                    return new GeneticSearch(matrixInitial, populationSize, elitismRatio);
                 }
-            };
-            Future<LogicComparable> future = mExecutorService.submit(callable);
-            mFuturesList.add(future);
+            });
         }
     }
 
+    /**
+     * Submits one simulated annealing search for each thread of the pool. Each search needs only a few arrays
+     * of the matrix size, so the pool can run many of them.
+     *
+     * @param matrixInitial Matrix to be solved
+     */
+    public void submitAnnealingCallables(@NotNull final Matrix matrixInitial) {
+        for (int i = 0; i < mThreadCount; i++) {
+            submitCallable(new Callable<LogicComparable>() {
+                @Override
+                public LogicComparable call() throws Exception {
+                    log.info("Starting thread: {}", Thread.currentThread().getName());
+                    return new AnnealingSearch(matrixInitial);
+                }
+            });
+        }
+    }
+
+    /**
+     * Submits any search competing for the solution of the current matrix. The search should check
+     * {@link Thread#isInterrupted()} to stop when it is cancelled.
+     *
+     * @param callable search creating the {@link LogicComparable} result
+     */
+    public synchronized void submitCallable(@NotNull final Callable<LogicComparable> callable) {
+        if (mCompletionService == null) {
+            mCompletionService = new ExecutorCompletionService<>(mExecutorService);
+        }
+        mFuturesList.add(mCompletionService.submit(callable));
+    }
+
+    /**
+     * Waits for the first search which completes with the solved matrix and cancels all the other submitted searches.
+     * The pool stays running for the next searches.
+     *
+     * @return First solved result, or the best result if no search solved the matrix.
+     * @throws InterruptedException if interrupted while waiting, all the submitted searches are cancelled then
+     * @throws ExecutionException   if all the searches failed, carrying the failure of the last one
+     */
     public LogicComparable monitorThreadsAndGetResult() throws InterruptedException, ExecutionException {
-        Iterator<Future<LogicComparable>> futuresIterator = mFuturesList.iterator();
-        Future<LogicComparable> future = null;
-        do {
-            if (futuresIterator.hasNext()) {
-                future = futuresIterator.next();
-            } else {
-                // restart iterator
-                futuresIterator = mFuturesList.iterator();
+        final CompletionService<LogicComparable> completionService;
+        final int submitted;
+        synchronized (this) {
+            completionService = mCompletionService;
+            submitted = mFuturesList.size();
+        }
+        LogicComparable result, bestResult = null;
+        ExecutionException lastFailure = null;
+        try {
+            for (int i = 0; i < submitted; i++) {
+                try {
+                    result = completionService.take().get();
+                } catch (ExecutionException e) {
+                    log.warn("Search failed", e.getCause());
+                    lastFailure = e;
+                    continue;
+                }
+                if (result.getCalculatedMatrix().isSolved()) {
+                    return result;
+                }
+                if (bestResult == null || result.getCalculatedMatrix().getTotalError()
+                        < bestResult.getCalculatedMatrix().getTotalError()) {
+                    bestResult = result;
+                }
             }
-            Thread.sleep(20000);
-        } while (!future.isDone());
+        } finally {
+            cancelSubmitted();
+        }
+        if (bestResult == null && lastFailure != null) {
+            throw lastFailure;
+        }
+        return bestResult;
+    }
+
+    /**
+     * Stops the pool, running searches are interrupted.
+     */
+    public void shutdown() {
+        cancelSubmitted();
         mExecutorService.shutdownNow();
-        return future.get();
+    }
+
+    /**
+     * Cancels all the submitted searches which are still running and starts new round of searches.
+     */
+    private synchronized void cancelSubmitted() {
+        for (Future<LogicComparable> future : mFuturesList) {
+            future.cancel(true);
+        }
+        mFuturesList.clear();
+        mCompletionService = null;
     }
 
 }
@@ -1,27 +1,148 @@
 package cz.zettel.algorithms.logic;
 
+import cz.zettel.algorithms.entity.CandidateMasks;
 import cz.zettel.algorithms.entity.Matrix;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class represents a full search in the solutions tree. It starts with setting the value to 1 from the top-left
  * of the matrix and checks if any constraint is violated. If so, the value in increased by 1 until the constraint is OK.
  * If maximum number is achieved (all values from 1 to 9 violate the constraint), the value is deleted and previous value
  * is increased.
+ * <p>
+ * The search stops when the thread is interrupted, the calculated matrix is left unfinished then.
+ * <p>
+ * Optionally the constraints can be checked using {@link CandidateMasks} instead of the occurrence histograms
+ * of the {@link Matrix}. The search walks the cells and values in the same order, so the result is identical,
+ * but each check is a single bitwise operation without any allocation.
+ * <p>
+ * In the counting mode the search does not stop at the first solution, but goes back from it and continues until
+ * the solution limit is reached or the whole tree is searched. With the limit of 2 it verifies the matrix has exactly
+ * one solution, which costs about the same as searching for the first solution and proving there is no other one.
  */
 public class FullSearch extends AbstractSearch {
     private static final Logger log = LoggerFactory.getLogger(FullSearch.class.getName());
     private static final int MIN_POINTER = 0;
-    private static final int MAX_POINTER = MATRIX_LENGTH * MATRIX_LENGTH - 1;
+
+    private final int mMaxPointer = mCellsCount - 1;
 
     private int mPointer = MIN_POINTER;
     private boolean mIsMovingForward = true;
+    /**
+     * Use bitmasks of used values for the constraint check instead of the occurrence histograms.
+     */
+    private boolean mUseBitmasks = false;
+    private CandidateMasks mCandidateMasks;
+    /**
+     * Number of the solutions after which the search stops.
+     */
+    private int mSolutionLimit = 1;
+    private int mSolutionCount;
+    private final List<Matrix> mSolutions = new ArrayList<>();
 
     public FullSearch(final Matrix initialMatrix) {
         super(initialMatrix);
-        calculateMatrix();
-        stopMeasuringTime();
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param initialMatrix
+     * @param useBitmasks   {@code true} to check the constraints using {@link CandidateMasks}
+     */
+    public FullSearch(final Matrix initialMatrix, final boolean useBitmasks) {
+        super(initialMatrix);
+        mUseBitmasks = useBitmasks;
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param initialMatrix
+     * @param useBitmasks   {@code true} to check the constraints using {@link CandidateMasks}
+     * @param presolve      {@code true} to reduce the matrix by the {@link Presolver} first, with bitmasks only
+     *                      the candidates left by the presolver are tried
+     */
+    public FullSearch(final Matrix initialMatrix, final boolean useBitmasks, final boolean presolve) {
+        super(initialMatrix);
+        mUseBitmasks = useBitmasks;
+        mPresolve = presolve;
+        solve(initialMatrix);
+    }
+
+    /**
+     * Counting constructor, the search continues after a solution until the limit of solutions is reached.
+     *
+     * @param initialMatrix
+     * @param useBitmasks   {@code true} to check the constraints using {@link CandidateMasks}
+     * @param presolve      {@code true} to reduce the matrix by the {@link Presolver} first
+     * @param solutionLimit Maximal number of solutions to be found, e.g. 2 to check if the solution is unique
+     */
+    public FullSearch(final Matrix initialMatrix, final boolean useBitmasks, final boolean presolve,
+                      final int solutionLimit) {
+        super(initialMatrix);
+        if (solutionLimit < 1) {
+            throw new IllegalArgumentException("Solution limit must be positive: " + solutionLimit);
+        }
+        mUseBitmasks = useBitmasks;
+        mSolutionLimit = solutionLimit;
+        mPresolve = presolve;
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor of a reusable search, the matrices are solved by {@link #solve(Matrix)}.
+     *
+     * @param length        Length of the matrices to be solved
+     * @param useBitmasks   {@code true} to check the constraints using {@link CandidateMasks}
+     * @param presolve      {@code true} to reduce each matrix by the {@link Presolver} first
+     * @param solutionLimit Maximal number of solutions to be found, 1 to stop at the first solution
+     */
+    public FullSearch(final int length, final boolean useBitmasks, final boolean presolve, final int solutionLimit) {
+        super(length);
+        if (solutionLimit < 1) {
+            throw new IllegalArgumentException("Solution limit must be positive: " + solutionLimit);
+        }
+        mUseBitmasks = useBitmasks;
+        mSolutionLimit = solutionLimit;
+        mPresolve = presolve;
+    }
+
+    /**
+     * Returns number of the solutions found, it does not exceed the solution limit. In the default mode the limit is 1.
+     *
+     * @return Number of solutions, 0 if the matrix has no solution.
+     */
+    public int getSolutionCount() {
+        return mSolutionCount;
+    }
+
+    /**
+     * @return {@code true} if exactly one solution was found, the limit allowed to look for another one
+     *         and the search was not stopped.
+     */
+    public boolean isUnique() {
+        return mSolutionCount == 1 && mSolutionLimit > 1 && mStopStatus == null;
+    }
+
+    /**
+     * Returns the solutions in the order they were found. The calculated matrix is the first of them.
+     *
+     * @return List of at most solution limit solved matrices.
+     */
+    public List<Matrix> getSolutions() {
+        return mSolutions;
+    }
+
+    @Override
+    int getDeadlineCheckInterval() {
+        return BACKTRACKING_DEADLINE_CHECK_INTERVAL;
     }
 
     @Override
@@ -30,29 +151,74 @@ public class FullSearch extends AbstractSearch {
         int currentRow, currentColumn;
         boolean wasCurrentTrySuccessful;
 
+        mPointer = MIN_POINTER;
+        mIsMovingForward = true;
+        mSolutionCount = 0;
+        mSolutions.clear();
+        if (isSolvedByPresolver()) {
+            // the propagation keeps all the solutions, so the solved matrix is the only one
+            if (mSolvedMatrix.isSolved()) {
+                mSolutionCount = 1;
+                mSolutions.add(mSolvedMatrix);
+            }
+            return;
+        }
+
         // create copy of initial matrix
-        mSolvedMatrix = new Matrix(mInitialMatrix.getArray());
+        resetSolvedMatrix();
+        // both modes check only the placed values, so conflicting initial values have to be found first
+        if (hasConflictingValues()) {
+            log.info("Matrix has no solution.");
+            return;
+        }
+        if (mUseBitmasks) {
+            if (mCandidateMasks == null) {
+                mCandidateMasks = new CandidateMasks(mSolvedMatrix);
+            } else {
+                mCandidateMasks.reset();
+            }
+        }
 
-        while (mPointer <= MAX_POINTER) {
+        while (mPointer <= mMaxPointer) {
+            if (isStopRequested()) {
+                log.info("Stopped: {}", mStopStatus);
+                break;
+            }
+            if (mPointer < MIN_POINTER) {
+                log.info(mSolutionCount == 0 ? "Matrix has no solution." : "Matrix has no other solution.");
+                break;
+            }
             currentRow = getPointerRow();
             currentColumn = getPointerColumn();
             wasCurrentTrySuccessful = false;
-            log.trace("pointer = {}, pointer row = {}, pointer column = {}", mPointer, currentRow, currentColumn);
-            log.trace("current value = {}", mSolvedMatrix.getValue(currentRow, currentColumn));
+            if (log.isTraceEnabled()) {
+                log.trace("pointer = {}, pointer row = {}, pointer column = {}", mPointer, currentRow, currentColumn);
+                log.trace("current value = {}", mSolvedMatrix.getValue(currentRow, currentColumn));
+            }
 
             if (checkIfNotInitialValue(currentRow, currentColumn)) {
-                // value increased (value < 9); can be replaced with decreaseValue to start searching from max number
-                while (mSolvedMatrix.increaseValue(currentRow, currentColumn)) {
-                    // check for constraint if OK
-                    if (!mSolvedMatrix.isConstraintViolated(currentRow, currentColumn)) {
+                if (mUseBitmasks) {
+                    wasCurrentTrySuccessful = placeNextAllowedValue(currentRow, currentColumn);
+                    if (wasCurrentTrySuccessful) {
                         movePointerForward();
-                        wasCurrentTrySuccessful = true;
-                        break;
+                    }
+                } else {
+                    // value increased (value < 9); can be replaced with decreaseValue to start searching from max number
+                    while (mSolvedMatrix.increaseValue(currentRow, currentColumn)) {
+                        // check for constraint if OK
+                        mCounters.addCheck();
+                        if (!mSolvedMatrix.isConstraintViolated(currentRow, currentColumn)) {
+                            mCounters.addNode();
+                            movePointerForward();
+                            wasCurrentTrySuccessful = true;
+                            break;
+                        }
                     }
                 }
                 // value increased to 9 but constraint violated, end of loop
                 if (!wasCurrentTrySuccessful) {
                     mSolvedMatrix.deleteValue(currentRow, currentColumn);
+                    mCounters.addBacktrack();
                     movePointerBackwards();
                 }
             } else {
@@ -60,17 +226,82 @@ public class FullSearch extends AbstractSearch {
                 movePointer();
             }
 
-            log.trace("Going {}, moved pointer to {}, value = {}", mIsMovingForward ? "right" : "left",
-                    mPointer, mSolvedMatrix.getValue(currentRow, currentColumn));
+            if (log.isTraceEnabled()) {
+                log.trace("Going {}, moved pointer to {}, value = {}", mIsMovingForward ? "right" : "left",
+                        mPointer, mSolvedMatrix.getValue(currentRow, currentColumn));
+            }
+
+            if (mPointer > mMaxPointer) {
+                addSolution();
+                if (mSolutionCount < mSolutionLimit) {
+                    // go back from the solution and continue with the last cell
+                    movePointerBackwards();
+                }
+            }
+        }
+        if (!mSolutions.isEmpty()) {
+            mSolvedMatrix = mSolutions.get(0);
+        }
+    }
+
+    /**
+     * Records the solved matrix. If the search continues, a copy is recorded because the matrix is going to be changed.
+     */
+    private void addSolution() {
+        mSolutionCount++;
+        mSolutions.add(mSolutionCount < mSolutionLimit ? new Matrix(mSolvedMatrix) : mSolvedMatrix);
+    }
+
+    /**
+     * Checks if some of the initial values are in conflict, the constraint check of the search skips them.
+     */
+    private boolean hasConflictingValues() {
+        for (int i = 0; i < mMatrixLength; i++) {
+            for (int j = 0; j < mMatrixLength; j++) {
+                if (mSolvedMatrix.getValue(i, j) != EMPTY_VALUE && mSolvedMatrix.isConstraintViolated(i, j)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the value of the cell by the next higher value which is not used in its row, column and square.
+     * The bitmasks are updated accordingly.
+     *
+     * @param row
+     * @param column
+     * @return {@code true} if such value was found, otherwise {@code false} and the cell is left empty
+     */
+    private boolean placeNextAllowedValue(final int row, final int column) {
+        final int currentValue = mSolvedMatrix.getValue(row, column);
+        final long candidates = getCandidates(row, column);
+        if (currentValue != EMPTY_VALUE) {
+            mCandidateMasks.remove(row, column, currentValue);
+        }
+        for (int value = currentValue + 1; value <= mMatrixLength; value++) {
+            if ((candidates & 1L << value - 1) == 0) {
+                continue;
+            }
+            mCounters.addCheck();
+            if (mCandidateMasks.isAllowed(row, column, value)) {
+                mCounters.addNode();
+                mSolvedMatrix.setValue(row, column, value);
+                mCandidateMasks.place(row, column, value);
+                return true;
+            }
         }
+        mSolvedMatrix.deleteValue(row, column);
+        return false;
     }
 
     private int getPointerRow() {
-        return mPointer / MATRIX_LENGTH;
+        return mPointer / mMatrixLength;
     }
 
     private int getPointerColumn() {
-        return mPointer % MATRIX_LENGTH;
+        return mPointer % mMatrixLength;
     }
 
     private int movePointer() {
@@ -2,48 +2,201 @@ package cz.zettel.algorithms.logic;
 
 import com.sun.istack.internal.NotNull;
 import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.metrics.GenerationListener;
+import cz.zettel.algorithms.metrics.GenerationSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Genetic Algorithm class
+ * <p>
+ * The population is held in two preallocated off-heap {@link PopulationArena}s, one for the parents and one for
+ * the offspring, which are swapped after each generation. Individuals are loaded into a few reusable matrices
+ * for the crossover and mutation, so the generations run without creating new objects.
+ * <p>
+ * The population is split into equal parts, one per thread. Each part is processed by its own {@link GenerationWorker}
+ * with its own random generator and matrices, and it writes only the offspring slots of its part, so the threads
+ * do not need any locking. With parallelism 1 the whole generation is computed by the calling thread.
+ * <p>
+ * Individuals are encoded in one of two ways, see {@link Encoding}. With the square permutation encoding each square
+ * always holds all the values, so the total error counts only the conflicts in the rows and columns.
  */
 public class GeneticSearch extends AbstractSearch {
     private static final Logger log = LoggerFactory.getLogger(GeneticSearch.class.getName());
 
     /**
-     * Percentage of population to be mutated.
+     * Default percentage of population to be mutated.
      */
-    private static final float MUTATION_RATIO = 0.1F;
+    static final float MUTATION_RATIO = 0.1F;
     /**
-     * Probability that the crossover happens.
+     * Default probability that the crossover happens.
      */
-    private static final float CROSSOVER_RATIO = 1F;
+    static final float CROSSOVER_RATIO = 1F;
     /**
-     * K-individuals in each tournaments.
+     * Default K-individuals in each tournaments.
      */
-    private static final int TOURNAMENT_SIZE = 2;
+    static final int TOURNAMENT_SIZE = 2;
     /**
      * Restart the algorithm and create new random population if number of iteration the best fitness stagnates.
      */
-    private static int STAGNATION_ITERATION_THRESHOLD = 50;
+    static final int STAGNATION_ITERATION_THRESHOLD = 50;
+    /**
+     * Default percentage of population which is kept as the elite archive on restart, see {@link #RESTART_PERTURBATION}.
+     */
+    static final float ARCHIVE_RATIO = 0.02F;
+    /**
+     * Default probability that a cell (or a square) of an archived individual gets a new random value on restart.
+     * The best archived individual is never perturbed. The other ones are changed slightly, because an archive
+     * kept unchanged takes over the new population within a few generations and the search ends up in the same
+     * local optimum again.
+     */
+    static final float RESTART_PERTURBATION = 0.1F;
+    /**
+     * Default percentage of population (the best individuals) improved by the local search after each generation,
+     * 0 turns the memetic mode off.
+     */
+    static final float LOCAL_SEARCH_RATIO = 0F;
+    /**
+     * Default number of moves tried by the local search on one individual in one generation.
+     */
+    static final int LOCAL_SEARCH_STEPS = 200;
+    /**
+     * Number of the individuals compared to the best one to estimate the diversity of the population
+     * for the {@link GenerationListener}.
+     */
+    private static final int DIVERSITY_SAMPLES = 32;
+    /**
+     * The local search samples up to this number of cells to find one whose value is in conflict.
+     */
+    private static final int CONFLICT_SAMPLES = 8;
+    /**
+     * The adaptive controller changes the parameters once in this number of stagnation iterations.
+     */
+    private static final int ADAPTATION_INTERVAL = 5;
+    /**
+     * The adaptive controller multiplies (or divides) the mutation ratio by this factor.
+     */
+    private static final float MUTATION_RATIO_FACTOR = 1.25F;
+    /**
+     * Limits of the parameters changed by the adaptive controller.
+     */
+    private static final float MAX_MUTATION_RATIO = 0.5F;
+    private static final int MAX_TOURNAMENT_SIZE = 5;
+    /**
+     * The workers check the deadline of the solve once in this number of individuals, so a generation of a large
+     * population does not overrun the deadline.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    /**
+     * Encoding of the individuals.
+     */
+    public enum Encoding {
+        /**
+         * Each empty cell holds an independent random value. Mutation overwrites a random cell by a random value,
+         * crossover exchanges whole rows or columns.
+         */
+        CELL,
+        /**
+         * Each square holds a permutation of the values missing in the square. Mutation swaps two non-initial cells
+         * of a square, crossover exchanges whole squares, so the squares never have any conflict.
+         */
+        SQUARE_PERMUTATION
+    }
 
     /**
      * Size of the population.
      */
-    private int mPopulationSize = 10000;
+    private final int mPopulationSize;
     /**
      * Percentage of population which are selected unchanged for new generation.
      */
-    private float mElitismRatio = 0.2F;
+    private final float mElitismRatio;
+    /**
+     * Configured mutation ratio and tournament size, and their current values changed by the adaptive controller.
+     */
+    private final float mBaseMutationRatio;
+    private final int mBaseTournamentSize;
+    private float mMutationRatio;
+    private int mTournamentSize;
+    private final float mCrossoverRatio;
+    private final int mStagnationThreshold;
+    /**
+     * {@code true} if the mutation ratio and tournament size are adapted to the progress of the search.
+     */
+    private final boolean mAdaptive;
+    /**
+     * Percentage of population kept on restart.
+     */
+    private final float mArchiveRatio;
+    private final float mRestartPerturbation;
+    /**
+     * Percentage of population improved by the local search and number of moves per individual.
+     */
+    private final float mLocalSearchRatio;
+    private final int mLocalSearchSteps;
+
+    /**
+     * Encoding of the individuals.
+     */
+    @NotNull
+    private final Encoding mEncoding;
+    /**
+     * Non-initial cells of each square and the values missing in each square, used by the square permutation encoding.
+     */
+    private int[][] mSquareFreeCells, mSquareMissingValues;
+    /**
+     * Squares with at least two non-initial cells, the only ones which can be mutated by a swap.
+     */
+    private int[] mMutableSquares;
+    /**
+     * Non-initial cells of the matrix, used by the local search with the cell encoding.
+     */
+    private int[] mFreeCells;
 
-    private Random mRandom;
+    /**
+     * Number of threads computing one generation.
+     */
+    private final int mParallelism;
+    /**
+     * Pool running the workers, {@code null} when the generation is computed by the calling thread only.
+     */
+    private ForkJoinPool mForkJoinPool;
+    /**
+     * Each worker computes its own part of the population.
+     */
+    private GenerationWorker[] mWorkers;
+    /**
+     * Current population and the buffer for its offspring, swapped after each generation.
+     */
+    private PopulationArena mPopulation, mPopulationOffspring;
     /**
      * Variables for calculating the stagnation.
      */
     private int mStagnationIteration, mCurrentMinimalError, mLastMinimalError;
+    /**
+     * Number of the current generation and number of the restarts.
+     */
+    private int mGeneration, mRestartCount;
+    /**
+     * Connection to the neighbour island when the search runs as a part of {@link IslandSearch}, otherwise {@code null}.
+     */
+    private final IslandMigration mMigration;
+    /**
+     * Listener of the generations and its reused snapshot, both {@code null} when no listener is attached.
+     */
+    private final GenerationListener mGenerationListener;
+    private final GenerationSnapshot mGenerationSnapshot;
+    private long mGenerationStartTime;
+    /**
+     * Number of the non-initial cells of the start matrix.
+     */
+    private int mFreeCellCount;
 
     /**
      * Default constructor.
@@ -51,9 +204,8 @@ public class GeneticSearch extends AbstractSearch {
      * @param initialMatrix
      */
     public GeneticSearch(@NotNull final Matrix initialMatrix) {
-        super(initialMatrix);
-        calculateMatrix();
-        stopMeasuringTime();
+        this(new Builder(initialMatrix));
+        solve(initialMatrix);
     }
 
     /**
@@ -66,113 +218,610 @@ public class GeneticSearch extends AbstractSearch {
     public GeneticSearch(@NotNull final Matrix initialMatrix,
                          @NotNull final int populationSize,
                          @NotNull final float elitismRatio) {
-        super(initialMatrix);
-        mPopulationSize = populationSize;
-        mElitismRatio = elitismRatio;
-        calculateMatrix();
-        stopMeasuringTime();
+        this(new Builder(initialMatrix).populationSize(populationSize).elitismRatio(elitismRatio));
+        solve(initialMatrix);
     }
 
+    /**
+     * Constructor used by the {@link Builder}, the populations are allocated by the first solve.
+     *
+     * @param builder configuration of the search
+     */
+    private GeneticSearch(@NotNull final Builder builder) {
+        super(builder.mLength);
+        mPopulationSize = builder.mPopulationSize;
+        mElitismRatio = builder.mElitismRatio;
+        mParallelism = builder.mParallelism;
+        mEncoding = builder.mEncoding;
+        mBaseMutationRatio = builder.mMutationRatio;
+        mBaseTournamentSize = builder.mTournamentSize;
+        mCrossoverRatio = builder.mCrossoverRatio;
+        mStagnationThreshold = builder.mStagnationThreshold;
+        mAdaptive = builder.mAdaptive;
+        mArchiveRatio = builder.mArchiveRatio;
+        mRestartPerturbation = builder.mRestartPerturbation;
+        mLocalSearchRatio = builder.mLocalSearchRatio;
+        mLocalSearchSteps = builder.mLocalSearchSteps;
+        mMigration = builder.mMigration;
+        mGenerationListener = builder.mGenerationListener;
+        mGenerationSnapshot = mGenerationListener == null ? null : new GenerationSnapshot();
+        mMutationRatio = mBaseMutationRatio;
+        mTournamentSize = mBaseTournamentSize;
+        mPresolve = builder.mPresolve;
+    }
 
-    @Override
-    void calculateMatrix() {
-        List<Map.Entry<Matrix, Integer>> population, populationOffspring;
-        mRandom = new Random();
-        Matrix parent1, parent2;
+    /**
+     * Builder of the genetic search. Parameters which are not set keep their default values, the search is done
+     * by {@link #build()}, or {@link #buildSolver()} creates a reusable search.
+     */
+    public static class Builder {
+        private final Matrix mInitialMatrix;
+        private final int mLength;
+        private int mPopulationSize = 10000;
+        private float mElitismRatio = 0.2F;
+        private int mParallelism = 1;
+        private boolean mPresolve;
+        @NotNull
+        private Encoding mEncoding = Encoding.CELL;
+        private float mMutationRatio = MUTATION_RATIO;
+        private float mCrossoverRatio = CROSSOVER_RATIO;
+        private int mTournamentSize = TOURNAMENT_SIZE;
+        private int mStagnationThreshold = STAGNATION_ITERATION_THRESHOLD;
+        private boolean mAdaptive = true;
+        private float mArchiveRatio = ARCHIVE_RATIO;
+        private float mRestartPerturbation = RESTART_PERTURBATION;
+        private float mLocalSearchRatio = LOCAL_SEARCH_RATIO;
+        private int mLocalSearchSteps = LOCAL_SEARCH_STEPS;
+        private IslandMigration mMigration;
+        private GenerationListener mGenerationListener;
 
-        // create initial population
-        population = createNewPopulation();
+        /**
+         * Constructor.
+         *
+         * @param initialMatrix Matrix to be solved
+         */
+        public Builder(@NotNull final Matrix initialMatrix) {
+            mInitialMatrix = initialMatrix;
+            mLength = initialMatrix.getLength();
+        }
+
+        /**
+         * Constructor of the builder of a reusable search.
+         *
+         * @param length Length of the matrices to be solved
+         */
+        public Builder(final int length) {
+            mInitialMatrix = null;
+            mLength = length;
+        }
 
-        do {
-            log.trace("Stagnation iteration {}, mCurrentMinimalError {}, MUTATION_RATIO {}", mStagnationIteration, mCurrentMinimalError, MUTATION_RATIO);
-            if (Thread.currentThread().isInterrupted()) {
-                log.info("Interrupted.");
-                break;
+        /**
+         * @param populationSize Size of the population, at least 2
+         */
+        public Builder populationSize(final int populationSize) {
+            if (populationSize < 2) {
+                throw new IllegalArgumentException("Population size must be at least 2: " + populationSize);
             }
+            mPopulationSize = populationSize;
+            return this;
+        }
 
-            calculateFitness(population);
+        /**
+         * @param elitismRatio Percentage of population which are selected unchanged for new generation
+         */
+        public Builder elitismRatio(final float elitismRatio) {
+            mElitismRatio = checkRatio("Elitism ratio", elitismRatio);
+            return this;
+        }
 
-            populationOffspring = new ArrayList<>();
+        /**
+         * @param parallelism Number of threads computing one generation
+         */
+        public Builder parallelism(final int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            }
+            mParallelism = parallelism;
+            return this;
+        }
 
-            // select elite individuals to offspring
-            for (int i = 0; i < (int) (population.size() * mElitismRatio); i++) {
-                populationOffspring.add(population.get(i));
+        /**
+         * @param presolve {@code true} to reduce the matrix by the {@link Presolver} first
+         */
+        public Builder presolve(final boolean presolve) {
+            mPresolve = presolve;
+            return this;
+        }
+
+        /**
+         * @param encoding Encoding of the individuals
+         */
+        public Builder encoding(@NotNull final Encoding encoding) {
+            mEncoding = encoding;
+            return this;
+        }
+
+        /**
+         * @param mutationRatio Percentage of population to be mutated, the adaptive controller starts from it
+         */
+        public Builder mutationRatio(final float mutationRatio) {
+            mMutationRatio = checkRatio("Mutation ratio", mutationRatio);
+            return this;
+        }
+
+        /**
+         * @param crossoverRatio Probability that the crossover happens
+         */
+        public Builder crossoverRatio(final float crossoverRatio) {
+            mCrossoverRatio = checkRatio("Crossover ratio", crossoverRatio);
+            return this;
+        }
+
+        /**
+         * @param tournamentSize K-individuals in each tournament, the adaptive controller starts from it
+         */
+        public Builder tournamentSize(final int tournamentSize) {
+            if (tournamentSize < 1) {
+                throw new IllegalArgumentException("Tournament size must be positive: " + tournamentSize);
             }
+            mTournamentSize = tournamentSize;
+            return this;
+        }
 
-            // add remaining individuals to offspring by crossover
-            while (populationOffspring.size() < mPopulationSize) {
-                parent1 = tournamentSelection(population);
-                parent2 = tournamentSelection(population);
-                crossover(parent1, parent2, populationOffspring);
+        /**
+         * @param stagnationThreshold Number of generations without improvement after which the search restarts
+         */
+        public Builder stagnationThreshold(final int stagnationThreshold) {
+            mStagnationThreshold = stagnationThreshold;
+            return this;
+        }
+
+        /**
+         * @param adaptive {@code true} to raise the mutation ratio and tournament size while the best fitness
+         *                 stagnates and lower them back while it improves
+         */
+        public Builder adaptive(final boolean adaptive) {
+            mAdaptive = adaptive;
+            return this;
+        }
+
+        /**
+         * @param archiveRatio Percentage of population (the best individuals) kept on restart, 0 to replace
+         *                     the whole population
+         */
+        public Builder archiveRatio(final float archiveRatio) {
+            mArchiveRatio = checkRatio("Archive ratio", archiveRatio);
+            return this;
+        }
+
+        /**
+         * @param restartPerturbation Probability that a cell (or a square) of an archived individual gets a new random
+         *                            value on restart, the best archived individual is kept unchanged
+         */
+        public Builder restartPerturbation(final float restartPerturbation) {
+            mRestartPerturbation = checkRatio("Restart perturbation", restartPerturbation);
+            return this;
+        }
+
+        /**
+         * Turns on the memetic mode, the best individuals are improved by a bounded local search after each generation.
+         *
+         * @param localSearchRatio Percentage of population (the best individuals, at most the elite) improved
+         *                         by the local search, 0 turns the memetic mode off
+         */
+        public Builder localSearchRatio(final float localSearchRatio) {
+            mLocalSearchRatio = checkRatio("Local search ratio", localSearchRatio);
+            return this;
+        }
+
+        /**
+         * @param localSearchSteps Number of moves tried by the local search on one individual in one generation
+         */
+        public Builder localSearchSteps(final int localSearchSteps) {
+            if (localSearchSteps < 1) {
+                throw new IllegalArgumentException("Local search steps must be positive: " + localSearchSteps);
             }
+            mLocalSearchSteps = localSearchSteps;
+            return this;
+        }
+
+        /**
+         * Attaches the listener receiving the state of each generation, e.g. {@link cz.zettel.algorithms.metrics.GenerationRecorder}.
+         * Without the listener the state is not computed at all.
+         *
+         * @param generationListener Listener called by the thread running the search
+         */
+        public Builder generationListener(@NotNull final GenerationListener generationListener) {
+            mGenerationListener = generationListener;
+            return this;
+        }
+
+        Builder migration(@NotNull final IslandMigration migration) {
+            mMigration = migration;
+            return this;
+        }
 
-            population = populationOffspring;
+        /**
+         * Runs the search.
+         *
+         * @return finished search
+         */
+        @NotNull
+        public GeneticSearch build() {
+            if (mInitialMatrix == null) {
+                throw new IllegalStateException("Builder of a reusable search has no matrix to solve");
+            }
+            final GeneticSearch search = new GeneticSearch(this);
+            search.solve(mInitialMatrix);
+            search.shutdown();
+            return search;
+        }
+
+        /**
+         * Creates a reusable search, the matrices are solved by {@link GeneticSearch#solve(Matrix)}. The populations
+         * and the threads of a parallel search are created by the first solve and kept for the next ones, the threads
+         * are stopped by {@link GeneticSearch#shutdown()}.
+         *
+         * @return new search
+         */
+        @NotNull
+        public GeneticSearch buildSolver() {
+            return new GeneticSearch(this);
+        }
 
-            // mutation for overall
-            mutate(population);
+        private static float checkRatio(final String name, final float ratio) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException(name + " must be from 0 to 1: " + ratio);
+            }
+            return ratio;
+        }
+    }
 
-            // if fitness stagnates for long => restart
-            if (mStagnationIteration > STAGNATION_ITERATION_THRESHOLD) {
-                mStagnationIteration = 0;
-                mRandom = new Random();
-                population = createNewPopulation();
-                log.debug("Search restarted, maximum stagnation iterations ({}) achieved. mCurrentMinimalError = {}", STAGNATION_ITERATION_THRESHOLD, mCurrentMinimalError);
+    @Override
+    void calculateMatrix() {
+        if (isSolvedByPresolver()) {
+            return;
+        }
+        PopulationArena swap;
+        mGeneration = 0;
+        mRestartCount = 0;
+        mStagnationIteration = 0;
+        mLastMinimalError = 0;
+        mMutationRatio = mBaseMutationRatio;
+        mTournamentSize = mBaseTournamentSize;
+        if (mEncoding == Encoding.SQUARE_PERMUTATION) {
+            findSquareFreeCells();
+        } else if (mLocalSearchRatio > 0) {
+            findFreeCells();
+        }
+        if (mPopulation == null) {
+            final SplittableRandom random = new SplittableRandom();
+            mPopulation = new PopulationArena(mPopulationSize, mMatrixLength);
+            mPopulationOffspring = new PopulationArena(mPopulationSize, mMatrixLength);
+            mWorkers = new GenerationWorker[mParallelism];
+            for (int i = 0; i < mParallelism; i++) {
+                mWorkers[i] = new GenerationWorker(mPopulationSize * i / mParallelism,
+                        mPopulationSize * (i + 1) / mParallelism, random.split());
             }
-        } while (mCurrentMinimalError > 0);
+            log.info("Population of {} individuals allocated, memory footprint {} bytes", mPopulationSize, getMemoryFootprint());
+        }
+        if (mParallelism > 1 && mForkJoinPool == null) {
+            mForkJoinPool = new ForkJoinPool(mParallelism);
+        }
 
-        log.info("Matrix found !");
-        mSolvedMatrix = population.get(0).getKey();
+        mFreeCellCount = countFreeCells();
+        if (mGenerationListener != null) {
+            mGenerationStartTime = System.nanoTime();
+        }
+
+        try {
+            // create initial population
+            runWorkers(GenerationWorker.CREATE);
+
+            do {
+                if (log.isTraceEnabled()) {
+                    log.trace("Stagnation iteration {}, mCurrentMinimalError {}, mutation ratio {}, tournament size {}", mStagnationIteration, mCurrentMinimalError, mMutationRatio, mTournamentSize);
+                }
+                if (isStopRequested()) {
+                    log.info("Stopped: {}", mStopStatus);
+                    break;
+                }
+                if (mMigration != null && mMigration.isStopped()) {
+                    log.info("Stopped by another island.");
+                    break;
+                }
+
+                calculateFitness();
+                if (mMigration != null && mMigration.isMigrationGeneration(mGeneration)) {
+                    migrate(mPopulation);
+                }
+                if (mGenerationListener != null) {
+                    publishGeneration();
+                }
+                if (mCurrentMinimalError == 0) {
+                    if (mMigration != null) {
+                        mMigration.stop();
+                    }
+                    break;
+                }
+                mGeneration++;
+
+                // if fitness stagnates for long => restart from the elite archive and random individuals
+                if (mStagnationIteration > mStagnationThreshold) {
+                    if (!restart()) {
+                        mStopStatus = SolveStatus.BUDGET_EXHAUSTED;
+                        break;
+                    }
+                    continue;
+                }
+                adaptParameters();
+
+                // select elite individuals to offspring and add remaining individuals to offspring by crossover
+                runWorkers(GenerationWorker.BREED);
+                if (isDeadlinePassed()) {
+                    // the breeding may have been cut short, so the ranked population is kept
+                    mStopStatus = SolveStatus.BUDGET_EXHAUSTED;
+                    break;
+                }
+
+                swap = mPopulation;
+                mPopulation = mPopulationOffspring;
+                mPopulationOffspring = swap;
+
+                // memetic mode => improve the elite by the local search while it is still ordered by fitness
+                if (mLocalSearchRatio > 0) {
+                    runWorkers(GenerationWorker.IMPROVE);
+                }
+
+                // mutation for overall
+                runWorkers(GenerationWorker.MUTATE);
+            } while (mCurrentMinimalError > 0);
+        } finally {
+            mCounters.addGenerations(mGeneration);
+            mCounters.addRestarts(mRestartCount);
+        }
+
+        resetSolvedMatrix();
+        mPopulation.load(mPopulation.findBestIndex(), mSolvedMatrix);
+        if (mSolvedMatrix.getTotalError() == 0) {
+            log.info("Matrix found !");
+        }
     }
 
     /**
-     * Creates initial population
+     * Sends copies of the best individuals to the neighbour island and replaces the worst individuals by the ones
+     * received from the other neighbour. The population must be ranked, it is ranked again after the migration.
      *
-     * @return List of entries for each individual
+     * @param population Population taking part in the migration
+     */
+    private void migrate(final PopulationArena population) {
+        Matrix migrant;
+        if (mMigration.canEmigrate()) {
+            for (int i = 0; i < mMigration.getMigrantCount(); i++) {
+                migrant = new Matrix(mInitialMatrix);
+                population.load(population.getRankedIndex(i), migrant);
+                mMigration.emigrate(migrant);
+            }
+        }
+        int received = 0;
+        while (received < mMigration.getMigrantCount() && (migrant = mMigration.immigrate()) != null) {
+            population.store(population.getRankedIndex(population.size() - 1 - received), migrant);
+            received++;
+        }
+        if (received > 0) {
+            population.rank();
+            mCurrentMinimalError = population.getError(population.getRankedIndex(0));
+            log.debug("Generation {}: {} migrants received, mCurrentMinimalError = {}", mGeneration, received, mCurrentMinimalError);
+        }
+    }
+
+    /**
+     * Passes the state of the ranked population to the listener. The diversity is estimated from a sample
+     * of {@link #DIVERSITY_SAMPLES} individuals spread over the ranking. The time of the generation does not include
+     * the time spent here and in the listener.
      */
-    private List<Map.Entry<Matrix, Integer>> createNewPopulation() {
-        final List<Map.Entry<Matrix, Integer>> population;
-        population = new ArrayList<>();
+    private void publishGeneration() {
+        final long time = System.nanoTime();
+        int error, maxError = 0;
+        long totalError = 0;
         for (int i = 0; i < mPopulationSize; i++) {
-            population.add(new AbstractMap.SimpleEntry<Matrix, Integer>(createRandomAllowedMatrix(), -1));
+            error = mPopulation.getError(i);
+            totalError += error;
+            maxError = Math.max(maxError, error);
+        }
+        final int best = mPopulation.getRankedIndex(0);
+        final int samples = Math.min(DIVERSITY_SAMPLES, mPopulationSize - 1);
+        long differences = 0;
+        for (int i = 1; i <= samples; i++) {
+            differences += mPopulation.countDifferences(best,
+                    mPopulation.getRankedIndex(i * (mPopulationSize - 1) / samples), mCellsCount);
+        }
+        mGenerationSnapshot.set(mGeneration, mCurrentMinimalError, (double) totalError / mPopulationSize, maxError,
+                samples == 0 || mFreeCellCount == 0 ? 0 : (double) differences / samples / mFreeCellCount,
+                mStagnationIteration, mRestartCount, time - mGenerationStartTime);
+        mGenerationListener.onGeneration(mGenerationSnapshot);
+        mGenerationStartTime = System.nanoTime();
+    }
+
+    private int countFreeCells() {
+        int freeCount = 0;
+        for (int i = 0; i < mMatrixLength; i++) {
+            for (int j = 0; j < mMatrixLength; j++) {
+                if (checkIfNotInitialValue(i, j)) {
+                    freeCount++;
+                }
+            }
         }
-        return population;
+        return freeCount;
     }
 
     /**
-     * Select the best individual from the tournament group, which size is configurable.
-     *
-     * @param population
-     * @return best Matrix
+     * Finds the non-initial cells for the local search with the cell encoding.
      */
-    private Matrix tournamentSelection(final List<Map.Entry<Matrix, Integer>> population) {
-        Map.Entry<Matrix, Integer> bestMatrix = null;
-        Map.Entry<Matrix, Integer> randomMatrix;
-        for (int i = 0; i < TOURNAMENT_SIZE; i++) {
-            randomMatrix = population.get(mRandom.nextInt(population.size()));
-            if (bestMatrix == null || randomMatrix.getValue() < bestMatrix.getValue()) {
-                bestMatrix = randomMatrix;
+    private void findFreeCells() {
+        final int[] cells = new int[mCellsCount];
+        int freeCount = 0;
+        for (int i = 0; i < mMatrixLength; i++) {
+            for (int j = 0; j < mMatrixLength; j++) {
+                if (checkIfNotInitialValue(i, j)) {
+                    cells[freeCount++] = i * mMatrixLength + j;
+                }
             }
         }
-        return bestMatrix.getKey();
+        mFreeCells = Arrays.copyOf(cells, freeCount);
+    }
+
+    /**
+     * Finds the non-initial cells and the missing values of each square, and the squares which can be mutated.
+     */
+    private void findSquareFreeCells() {
+        mSquareFreeCells = new int[mMatrixLength][];
+        mSquareMissingValues = new int[mMatrixLength][];
+        final int[] cells = new int[mMatrixLength];
+        final boolean[] present = new boolean[mMatrixLength + 1];
+        int mutableCount = 0, freeCount, row, column, value;
+        for (int square = 0; square < mMatrixLength; square++) {
+            freeCount = 0;
+            Arrays.fill(present, false);
+            for (int k = 0; k < mMatrixLength; k++) {
+                row = square / mSquareLength * mSquareLength + k / mSquareLength;
+                column = square % mSquareLength * mSquareLength + k % mSquareLength;
+                value = mStartMatrix.getValue(row, column);
+                if (value == EMPTY_VALUE) {
+                    cells[freeCount++] = row * mMatrixLength + column;
+                } else {
+                    present[value] = true;
+                }
+            }
+            mSquareFreeCells[square] = Arrays.copyOf(cells, freeCount);
+            mSquareMissingValues[square] = new int[freeCount];
+            for (int missing = 0, v = 1; v <= mMatrixLength; v++) {
+                // a repeated initial value leaves less missing values than free cells, the rest stays empty
+                if (!present[v] && missing < freeCount) {
+                    mSquareMissingValues[square][missing++] = v;
+                }
+            }
+            if (freeCount > 1) {
+                mutableCount++;
+            }
+        }
+        mMutableSquares = new int[mutableCount];
+        for (int square = 0, i = 0; square < mMatrixLength; square++) {
+            if (mSquareFreeCells[square].length > 1) {
+                mMutableSquares[i++] = square;
+            }
+        }
+    }
+
+    /**
+     * Stops the threads computing the generations in parallel. A reusable search starts new ones by the next solve.
+     */
+    public void shutdown() {
+        if (mForkJoinPool != null) {
+            mForkJoinPool.shutdownNow();
+            mForkJoinPool = null;
+        }
+    }
+
+    /**
+     * Returns memory occupied by the population buffers of the current search.
+     *
+     * @return Number of bytes, 0 if no population was created yet.
+     */
+    public long getMemoryFootprint() {
+        return mPopulation == null ? 0 : mPopulation.getMemoryFootprint() + mPopulationOffspring.getMemoryFootprint();
+    }
+
+    /**
+     * @return Number of generations bred by the search.
+     */
+    public int getGenerationCount() {
+        return mGeneration;
+    }
+
+    /**
+     * @return Number of restarts caused by the stagnating fitness.
+     */
+    public int getRestartCount() {
+        return mRestartCount;
+    }
+
+    /**
+     * Runs one step of the generation by all the workers and waits until all of them are done.
+     *
+     * @param step one of the {@link GenerationWorker} steps
+     */
+    private void runWorkers(final int step) {
+        for (GenerationWorker worker : mWorkers) {
+            worker.prepare(step);
+        }
+        if (mForkJoinPool == null) {
+            mWorkers[0].compute();
+        } else {
+            mForkJoinPool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(mWorkers);
+                }
+            });
+        }
     }
 
     /**
-     * Calculates the fitness for each individual in the population. Here fitness function is represented by a total error for each individual.
-     * Zero error means matrix is solved and it is the highest fitness. Higher error means lower fitness.
-     * It also remember the last lowest error and calculates how many iteration it does not improve.
-     * This is needed when the algorithm get stuck in local optimum and needs to be restarted.
+     * Replaces the population by the elite archive and new random individuals, the parameters changed by the adaptive
+     * controller are reset.
      *
-     * @param population Population to be evaluated with fitness.
+     * @return {@code false} if the deadline passed, the population is not replaced then
      */
-    private void calculateFitness(final List<Map.Entry<Matrix, Integer>> population) {
-        // calculate total error for each matrix
-        for (Map.Entry<Matrix, Integer> entry : population) {
-            entry.setValue(entry.getKey().getTotalError());
+    private boolean restart() {
+        mRestartCount++;
+        mStagnationIteration = 0;
+        mMutationRatio = mBaseMutationRatio;
+        mTournamentSize = mBaseTournamentSize;
+        runWorkers(GenerationWorker.RESTART);
+        if (isDeadlinePassed()) {
+            return false;
         }
+        final PopulationArena swap = mPopulation;
+        mPopulation = mPopulationOffspring;
+        mPopulationOffspring = swap;
+        log.debug("Search restarted, maximum stagnation iterations ({}) achieved. mCurrentMinimalError = {}", mStagnationThreshold, mCurrentMinimalError);
+        return true;
+    }
+
+    /**
+     * Adaptive controller. While the best fitness improves, the mutation ratio and tournament size return back
+     * to the configured values. While it stagnates, they are raised once in {@link #ADAPTATION_INTERVAL} generations,
+     * so the population gets more diverse and the selection pressure stronger before the search has to restart.
+     */
+    private void adaptParameters() {
+        if (!mAdaptive) {
+            return;
+        }
+        if (mStagnationIteration == 0) {
+            mMutationRatio = Math.max(mBaseMutationRatio, mMutationRatio / MUTATION_RATIO_FACTOR);
+            mTournamentSize = Math.max(mBaseTournamentSize, mTournamentSize - 1);
+        } else if (mStagnationIteration % ADAPTATION_INTERVAL == 0) {
+            mMutationRatio = Math.min(Math.max(mBaseMutationRatio, MAX_MUTATION_RATIO), mMutationRatio * MUTATION_RATIO_FACTOR);
+            mTournamentSize = Math.min(Math.max(mBaseTournamentSize, MAX_TOURNAMENT_SIZE), mTournamentSize + 1);
+        }
+    }
+
+    /**
+     * Calculates the fitness for each individual in the population. Here the fitness function is represented
+     * by the total error of each individual. Zero error means the matrix is solved and it is the highest fitness.
+     * Higher error means lower fitness. The total error is maintained by the {@link Matrix} and stored with each
+     * individual, so it is only read here. It also remembers the last lowest error and counts how many iterations
+     * it does not improve. This is needed when the algorithm gets stuck in a local optimum and needs to be restarted.
+     */
+    private void calculateFitness() {
         // sort the population according to fitness
-        population.sort(Map.Entry.comparingByValue());
+        runWorkers(GenerationWorker.RANK);
+        mPopulation.sortRanking(mForkJoinPool != null);
         // increase iteration if best fitness is stagnating
-        mCurrentMinimalError = population.get(0).getValue();
+        mCurrentMinimalError = mPopulation.getError(mPopulation.getRankedIndex(0));
+        mCounters.addEvaluations(mPopulationSize);
+        mCounters.recordBestError(mGeneration, mCurrentMinimalError);
         if (mCurrentMinimalError == mLastMinimalError) {
             mStagnationIteration++;
         } else {
@@ -182,79 +831,476 @@ public class GeneticSearch extends AbstractSearch {
     }
 
     /**
-     * Mutates a percentage of population.
-     *
-     * @param population population to be mutated
-     */
-    private void mutate(final List<Map.Entry<Matrix, Integer>> population) {
-        int randomIndex, randomMatrixRow, randomMatrixColumn, randomValue;
-        // iterate
-        for (int i = 0; i < population.size() * MUTATION_RATIO; i++) {
-            randomIndex = mRandom.nextInt(population.size());
-            // generate new random axis until one of allowed are found
-            do {
-                randomMatrixRow = mRandom.nextInt(MATRIX_LENGTH);
-                randomMatrixColumn = mRandom.nextInt(MATRIX_LENGTH);
-            } while (!checkIfNotInitialValue(randomMatrixRow, randomMatrixColumn));
-            randomValue = mRandom.nextInt(MATRIX_LENGTH) + 1;
-            population.get(randomIndex).getKey().setValue(randomMatrixRow, randomMatrixColumn, randomValue);
+     * Worker computing one part of the population. It has its own random generator, views of the populations
+     * and matrices for the genetic operators, so the workers can run in parallel without any locking.
+     */
+    private class GenerationWorker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        static final int CREATE = 0;
+        static final int RANK = 1;
+        static final int BREED = 2;
+        static final int MUTATE = 3;
+        static final int RESTART = 4;
+        static final int IMPROVE = 5;
+
+        /**
+         * Slots of the population processed by this worker, from inclusive, to exclusive.
+         */
+        private final int mFrom, mTo;
+        @NotNull
+        private final SplittableRandom mRandom;
+        /**
+         * Views of the current population and its offspring, they are swapped together with the populations.
+         */
+        private PopulationArena mPopulationView, mPopulationOffspringView;
+        @NotNull
+        private final Matrix mParent1, mParent2, mOffspring1, mOffspring2;
+        /**
+         * Values to be shuffled into a square by the square permutation encoding.
+         */
+        @NotNull
+        private final int[] mSquareValues = new int[mMatrixLength];
+        private int mStep;
+
+        GenerationWorker(final int from, final int to, @NotNull final SplittableRandom random) {
+            mFrom = from;
+            mTo = to;
+            mRandom = random;
+            mPopulationView = mPopulation.view();
+            mPopulationOffspringView = mPopulationOffspring.view();
+            mParent1 = new Matrix(mInitialMatrix);
+            mParent2 = new Matrix(mInitialMatrix);
+            mOffspring1 = new Matrix(mInitialMatrix);
+            mOffspring2 = new Matrix(mInitialMatrix);
         }
-    }
 
-    /**
-     * Creates an offspring by random crossover of parent1 and random parent2 from selected population.
-     * Crossover is done for random number of either rows or columns.
-     *
-     * @param parent1             first parent
-     * @param parent1             first parent
-     * @param populationOffspring List where the offspring will be added.
-     */
-    private void crossover(final Matrix parent1,
-                           final Matrix parent2,
-                           final List<Map.Entry<Matrix, Integer>> populationOffspring) {
-
-        final Matrix offspring1 = new Matrix(parent1.getArray());
-        final Matrix offspring2 = new Matrix(parent2.getArray());
-        final int randomCrossoverLine = mRandom.nextInt(MATRIX_LENGTH);
-        final int randomCrossoverStyle = mRandom.nextInt(2);
-
-        final int probabilityValue = mRandom.nextInt(9);
-        // do crossover only with CROSSOVER_RATIO probability
-        if (probabilityValue < (int) CROSSOVER_RATIO * 10) {
-            // iterate random number of rows or columns => create offspring from parent1 and parent2
-            for (int i = 0; i < randomCrossoverLine; i++) {
-                if (randomCrossoverStyle == 0) {
-                    offspring1.setRow(i, parent2.getRow(i));
-                    offspring2.setRow(i, parent1.getRow(i));
+        /**
+         * Prepares the worker to run the step. Views are swapped when the populations were swapped.
+         *
+         * @param step step to run
+         */
+        void prepare(final int step) {
+            reinitialize();
+            mStep = step;
+            if (!mPopulationView.isViewOf(mPopulation)) {
+                final PopulationArena swap = mPopulationView;
+                mPopulationView = mPopulationOffspringView;
+                mPopulationOffspringView = swap;
+            }
+        }
+
+        @Override
+        protected void compute() {
+            switch (mStep) {
+                case CREATE:
+                    createNewPopulation();
+                    break;
+                case RANK:
+                    mPopulationView.fillRanking(mFrom, mTo);
+                    break;
+                case BREED:
+                    breed();
+                    break;
+                case MUTATE:
+                    mutate();
+                    break;
+                case RESTART:
+                    restartPopulation();
+                    break;
+                case IMPROVE:
+                    improve();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown step " + mStep);
+            }
+        }
+
+        /**
+         * Fills the part of the population with new random individuals. When the deadline passes, the rest of the slots
+         * is cleared, so the individuals left there by the previous solve are not taken as the result.
+         */
+        private void createNewPopulation() {
+            for (int i = mFrom; i < mTo; i++) {
+                if (i > mFrom && checkDeadline(i - mFrom)) {
+                    for (; i < mTo; i++) {
+                        mPopulationView.clear(i);
+                    }
+                    break;
+                }
+                createRandomAllowedMatrix(mOffspring1);
+                mPopulationView.store(i, mOffspring1);
+            }
+        }
+
+        /**
+         * Checks the deadline of the solve once in {@link #DEADLINE_CHECK_INTERVAL} individuals.
+         *
+         * @param count Number of the individuals done by the step
+         * @return {@code true} if the step should stop
+         */
+        private boolean checkDeadline(final int count) {
+            return count % DEADLINE_CHECK_INTERVAL == 0 && isDeadlinePassed();
+        }
+
+        /**
+         * Fills the part of the offspring population on restart. Slots belonging to the archive are filled by the best
+         * individuals of the ranked population, all but the best one slightly perturbed, the remaining slots by new
+         * random individuals.
+         */
+        private void restartPopulation() {
+            final int archiveCount = (int) (mPopulationSize * mArchiveRatio);
+            for (int i = mFrom; i < mTo; i++) {
+                if (checkDeadline(i - mFrom)) {
+                    break;
+                }
+                if (i < archiveCount) {
+                    mPopulationView.load(mPopulationView.getRankedIndex(i), mOffspring1);
+                    if (i > 0) {
+                        perturb(mOffspring1);
+                    }
                 } else {
-                    offspring1.setColumn(i, parent2.getColumn(i));
-                    offspring2.setColumn(i, parent1.getColumn(i));
+                    createRandomAllowedMatrix(mOffspring1);
                 }
+                mPopulationOffspringView.store(i, mOffspring1);
             }
         }
-        log.trace("OFFSPRING1: %s", offspring1.toString());
-        log.trace("OFFSPRING2: %s", offspring2.toString());
-        populationOffspring.add(new AbstractMap.SimpleEntry<Matrix, Integer>(offspring1, -1));
-        populationOffspring.add(new AbstractMap.SimpleEntry<Matrix, Integer>(offspring2, -1));
-    }
 
-    /**
-     * Creates new matrix with random values filled in empty cells
-     *
-     * @return random {@link Matrix} based on initial Matrix
-     */
-    private Matrix createRandomAllowedMatrix() {
-        // create copy of initial matrix
-        Matrix randomMatrix = new Matrix(mInitialMatrix.getArray());
-        for (int i = 0; i < MATRIX_LENGTH; i++) {
-            for (int j = 0; j < MATRIX_LENGTH; j++) {
-                if (checkIfNotInitialValue(i, j)) {
-                    // update values with random where not initial value
-                    randomMatrix.setValue(i, j, mRandom.nextInt(MATRIX_LENGTH) + 1);
-                    log.trace("createRandomAllowedMatrix i={}, j={}, value={}", i, j, randomMatrix.getValue(i, j));
+        /**
+         * Improves the best individuals of the part of the population by the local search. After the breeding
+         * the elite individuals are stored in the first slots in the order of their fitness, so only the elite slots
+         * are improved, and it has to run before the mutation changes them.
+         */
+        private void improve() {
+            final int eliteCount = (int) (mPopulationSize * mElitismRatio);
+            final int improvedCount = Math.min(Math.min((int) (mPopulationSize * mLocalSearchRatio), eliteCount), mTo);
+            for (int i = mFrom; i < improvedCount; i++) {
+                if (checkDeadline(i - mFrom)) {
+                    break;
+                }
+                mPopulationView.load(i, mOffspring1);
+                if (mEncoding == Encoding.SQUARE_PERMUTATION) {
+                    localSearchBySwap(mOffspring1);
+                } else {
+                    localSearch(mOffspring1);
+                }
+                mPopulationView.store(i, mOffspring1);
+            }
+        }
+
+        /**
+         * Hill climbing on the cell values. Each move gives a new random value to a non-initial cell, preferably
+         * to a conflicting one, and it is reverted if the total error increases. Moves keeping the error are accepted,
+         * so the search can cross the plateaus. The matrix maintains its error on each change, so a move takes
+         * constant time.
+         *
+         * @param matrix individual to be improved
+         */
+        private void localSearch(final Matrix matrix) {
+            if (mFreeCells.length == 0) {
+                return;
+            }
+            int cell, row, column, oldValue, error;
+            for (int step = 0; step < mLocalSearchSteps && matrix.getTotalError() > 0; step++) {
+                cell = pickConflictingCell(matrix, mFreeCells);
+                row = cell / mMatrixLength;
+                column = cell % mMatrixLength;
+                oldValue = matrix.getValue(row, column);
+                error = matrix.getTotalError();
+                matrix.setValue(row, column, pickRandomCandidate(row, column));
+                if (matrix.getTotalError() > error) {
+                    matrix.setValue(row, column, oldValue);
+                }
+            }
+        }
+
+        /**
+         * Hill climbing for the square permutation encoding. Each move swaps a conflicting non-initial cell
+         * of a random square with another non-initial cell of the square, and it is reverted if the total error
+         * increases.
+         *
+         * @param matrix individual to be improved
+         */
+        private void localSearchBySwap(final Matrix matrix) {
+            if (mMutableSquares.length == 0) {
+                return;
+            }
+            int[] cells;
+            int first, second, error;
+            for (int step = 0; step < mLocalSearchSteps && matrix.getTotalError() > 0; step++) {
+                cells = mSquareFreeCells[mMutableSquares[mRandom.nextInt(mMutableSquares.length)]];
+                first = pickConflictingCell(matrix, cells);
+                do {
+                    second = cells[mRandom.nextInt(cells.length)];
+                } while (second == first);
+                error = matrix.getTotalError();
+                swapValues(matrix, first, second);
+                if (matrix.getTotalError() > error) {
+                    swapValues(matrix, first, second);
+                }
+            }
+        }
+
+        /**
+         * Picks a random cell, a few cells are sampled to find one whose value is in conflict.
+         *
+         * @param matrix individual
+         * @param cells  cells to pick from, encoded as {@code row * length + column}
+         * @return Conflicting cell, or the last sampled cell if none of the sampled cells is in conflict.
+         */
+        private int pickConflictingCell(final Matrix matrix, final int[] cells) {
+            int cell = cells[mRandom.nextInt(cells.length)];
+            for (int i = 1; i < CONFLICT_SAMPLES
+                    && matrix.getConflictCount(cell / mMatrixLength, cell % mMatrixLength) == 0; i++) {
+                cell = cells[mRandom.nextInt(cells.length)];
+            }
+            return cell;
+        }
+
+        private void swapValues(final Matrix matrix, final int first, final int second) {
+            final int value = matrix.getValue(first / mMatrixLength, first % mMatrixLength);
+            matrix.setValue(first / mMatrixLength, first % mMatrixLength,
+                    matrix.getValue(second / mMatrixLength, second % mMatrixLength));
+            matrix.setValue(second / mMatrixLength, second % mMatrixLength, value);
+        }
+
+        /**
+         * Fills the part of the offspring population. Slots belonging to the elite are filled by the elite
+         * individuals of the ranked population, the remaining slots are filled by crossover.
+         */
+        private void breed() {
+            final int eliteCount = (int) (mPopulationSize * mElitismRatio);
+            int offspringCount = mFrom;
+            // select elite individuals to offspring
+            for (; offspringCount < Math.min(eliteCount, mTo); offspringCount++) {
+                mPopulationView.load(mPopulationView.getRankedIndex(offspringCount), mOffspring1);
+                mPopulationOffspringView.store(offspringCount, mOffspring1);
+            }
+            // add remaining individuals to offspring by crossover
+            for (int i = 0; offspringCount < mTo; i++) {
+                if (checkDeadline(i)) {
+                    break;
+                }
+                offspringCount = crossover(tournamentSelection(), tournamentSelection(), offspringCount);
+            }
+        }
+
+        /**
+         * Select the best individual from the tournament group, which size is configurable.
+         *
+         * @return slot index of the best individual
+         */
+        private int tournamentSelection() {
+            int bestIndex = -1;
+            int randomIndex;
+            for (int i = 0; i < mTournamentSize; i++) {
+                randomIndex = mRandom.nextInt(mPopulationSize);
+                if (bestIndex == -1 || mPopulationView.getError(randomIndex) < mPopulationView.getError(bestIndex)) {
+                    bestIndex = randomIndex;
+                }
+            }
+            return bestIndex;
+        }
+
+        /**
+         * Mutates a percentage of the part of the population.
+         */
+        private void mutate() {
+            if (mEncoding == Encoding.SQUARE_PERMUTATION) {
+                mutateBySwap();
+                return;
+            }
+            if (mFreeCellCount == 0) {
+                // there is no cell to mutate, the search below would never find one
+                return;
+            }
+            int randomIndex, randomMatrixRow, randomMatrixColumn, randomValue;
+            // iterate
+            for (int i = 0; i < (mTo - mFrom) * mMutationRatio; i++) {
+                if (checkDeadline(i)) {
+                    break;
+                }
+                randomIndex = mFrom + mRandom.nextInt(mTo - mFrom);
+                // generate new random axis until one of allowed are found
+                do {
+                    randomMatrixRow = mRandom.nextInt(mMatrixLength);
+                    randomMatrixColumn = mRandom.nextInt(mMatrixLength);
+                } while (!checkIfNotInitialValue(randomMatrixRow, randomMatrixColumn));
+                randomValue = pickRandomCandidate(randomMatrixRow, randomMatrixColumn);
+                mPopulationView.load(randomIndex, mOffspring1);
+                mOffspring1.setValue(randomMatrixRow, randomMatrixColumn, randomValue);
+                mPopulationView.store(randomIndex, mOffspring1);
+            }
+        }
+
+        /**
+         * Mutates a percentage of the part of the population by swapping two non-initial cells of a random square,
+         * so the square keeps its permutation.
+         */
+        private void mutateBySwap() {
+            if (mMutableSquares.length == 0) {
+                return;
+            }
+            int randomIndex, first, second, value;
+            int[] cells;
+            for (int i = 0; i < (mTo - mFrom) * mMutationRatio; i++) {
+                if (checkDeadline(i)) {
+                    break;
+                }
+                randomIndex = mFrom + mRandom.nextInt(mTo - mFrom);
+                cells = mSquareFreeCells[mMutableSquares[mRandom.nextInt(mMutableSquares.length)]];
+                first = mRandom.nextInt(cells.length);
+                second = mRandom.nextInt(cells.length - 1);
+                if (second >= first) {
+                    second++;
+                }
+                first = cells[first];
+                second = cells[second];
+                mPopulationView.load(randomIndex, mOffspring1);
+                value = mOffspring1.getValue(first / mMatrixLength, first % mMatrixLength);
+                mOffspring1.setValue(first / mMatrixLength, first % mMatrixLength,
+                        mOffspring1.getValue(second / mMatrixLength, second % mMatrixLength));
+                mOffspring1.setValue(second / mMatrixLength, second % mMatrixLength, value);
+                mPopulationView.store(randomIndex, mOffspring1);
+            }
+        }
+
+        /**
+         * Creates offspring by random crossover of two parents selected from the population.
+         * Crossover is done for random number of either rows or columns, or of squares with the square permutation
+         * encoding.
+         *
+         * @param parent1        slot index of the first parent in the population
+         * @param parent2        slot index of the second parent in the population
+         * @param offspringCount slot index of the first offspring
+         * @return Slot index following the stored offspring.
+         */
+        private int crossover(final int parent1, final int parent2, int offspringCount) {
+            mPopulationView.load(parent1, mParent1);
+            mPopulationView.load(parent2, mParent2);
+            mOffspring1.copyFrom(mParent1);
+            mOffspring2.copyFrom(mParent2);
+            final int randomCrossoverLine = mRandom.nextInt(mMatrixLength);
+            final int randomCrossoverStyle = mRandom.nextInt(2);
+
+            // do crossover only with the crossover ratio probability
+            if (mRandom.nextDouble() < mCrossoverRatio) {
+                // iterate random number of rows or columns => create offspring from parent1 and parent2
+                for (int i = 0; i < randomCrossoverLine; i++) {
+                    if (mEncoding == Encoding.SQUARE_PERMUTATION) {
+                        mOffspring1.copySquare(i, mParent2);
+                        mOffspring2.copySquare(i, mParent1);
+                    } else if (randomCrossoverStyle == 0) {
+                        mOffspring1.copyRow(i, mParent2);
+                        mOffspring2.copyRow(i, mParent1);
+                    } else {
+                        mOffspring1.copyColumn(i, mParent2);
+                        mOffspring2.copyColumn(i, mParent1);
+                    }
+                }
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("OFFSPRING1: {}", mOffspring1.toString());
+                log.trace("OFFSPRING2: {}", mOffspring2.toString());
+            }
+            // offspring are stored only into the slots of this worker
+            mPopulationOffspringView.store(offspringCount++, mOffspring1);
+            if (offspringCount < mTo) {
+                mPopulationOffspringView.store(offspringCount++, mOffspring2);
+            }
+            return offspringCount;
+        }
+
+        /**
+         * Picks random value out of the candidates of the cell.
+         *
+         * @param row
+         * @param column
+         * @return random value
+         */
+        private int pickRandomCandidate(final int row, final int column) {
+            final long candidates = getCandidates(row, column);
+            return Presolver.pickCandidate(candidates, mRandom.nextInt(Long.bitCount(candidates)));
+        }
+
+        /**
+         * Fills empty cells of the matrix with random values
+         *
+         * @param randomMatrix Matrix to be overwritten by random {@link Matrix} based on initial Matrix
+         */
+        private void createRandomAllowedMatrix(final Matrix randomMatrix) {
+            // start from copy of initial matrix
+            randomMatrix.copyFrom(mStartMatrix);
+            if (mEncoding == Encoding.SQUARE_PERMUTATION) {
+                fillSquarePermutations(randomMatrix);
+                return;
+            }
+            for (int i = 0; i < mMatrixLength; i++) {
+                for (int j = 0; j < mMatrixLength; j++) {
+                    if (checkIfNotInitialValue(i, j)) {
+                        // update values with random where not initial value
+                        randomMatrix.setValue(i, j, pickRandomCandidate(i, j));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Fills the non-initial cells of each square with a random permutation of the values missing in the square.
+         *
+         * @param randomMatrix copy of the start matrix
+         */
+        private void fillSquarePermutations(final Matrix randomMatrix) {
+            for (int square = 0; square < mMatrixLength; square++) {
+                fillSquarePermutation(randomMatrix, square);
+            }
+        }
+
+        /**
+         * Fills the non-initial cells of the square with a random permutation of the values missing in the square.
+         *
+         * @param randomMatrix matrix to be changed
+         * @param square       index of the square
+         */
+        private void fillSquarePermutation(final Matrix randomMatrix, final int square) {
+            final int[] cells = mSquareFreeCells[square];
+            final int[] values = mSquareMissingValues[square];
+            int j, swap;
+            System.arraycopy(values, 0, mSquareValues, 0, values.length);
+            // Fisher-Yates shuffle
+            for (int i = values.length - 1; i > 0; i--) {
+                j = mRandom.nextInt(i + 1);
+                swap = mSquareValues[i];
+                mSquareValues[i] = mSquareValues[j];
+                mSquareValues[j] = swap;
+            }
+            for (int i = 0; i < values.length; i++) {
+                randomMatrix.setValue(cells[i] / mMatrixLength, cells[i] % mMatrixLength, mSquareValues[i]);
+            }
+        }
+
+        /**
+         * Replaces the values of the random part of the non-initial cells, or of the squares with the square
+         * permutation encoding, by new random values.
+         *
+         * @param matrix matrix to be changed
+         */
+        private void perturb(final Matrix matrix) {
+            if (mEncoding == Encoding.SQUARE_PERMUTATION) {
+                for (int square = 0; square < mMatrixLength; square++) {
+                    if (mRandom.nextDouble() < mRestartPerturbation) {
+                        fillSquarePermutation(matrix, square);
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < mMatrixLength; i++) {
+                for (int j = 0; j < mMatrixLength; j++) {
+                    if (checkIfNotInitialValue(i, j) && mRandom.nextDouble() < mRestartPerturbation) {
+                        matrix.setValue(i, j, pickRandomCandidate(i, j));
+                    }
                 }
             }
         }
-        return randomMatrix;
     }
 }
@@ -0,0 +1,104 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class connects one island of the {@link IslandSearch} with its neighbour.
+ * Migrants are exchanged over lock-free queues, each island reads from its own inbound queue and writes to the inbound
+ * queue of the next island. All the islands share one flag which stops them as soon as any of them finds the solution.
+ */
+class IslandMigration {
+
+    @NotNull
+    private final Queue<Matrix> mInbound;
+    @NotNull
+    private final Queue<Matrix> mOutbound;
+    @NotNull
+    private final AtomicBoolean mStopped;
+    /**
+     * Number of generations between two migrations.
+     */
+    private final int mInterval;
+    /**
+     * Number of elite individuals sent to the neighbour in one migration.
+     */
+    private final int mMigrantCount;
+
+    /**
+     * Default constructor.
+     *
+     * @param inbound      queue of the individuals coming to this island
+     * @param outbound     queue of the individuals leaving to the neighbour island
+     * @param stopped      flag shared by all the islands
+     * @param interval     number of generations between two migrations
+     * @param migrantCount number of individuals sent in one migration
+     */
+    IslandMigration(@NotNull final Queue<Matrix> inbound,
+                    @NotNull final Queue<Matrix> outbound,
+                    @NotNull final AtomicBoolean stopped,
+                    final int interval,
+                    final int migrantCount) {
+        mInbound = inbound;
+        mOutbound = outbound;
+        mStopped = stopped;
+        mInterval = interval;
+        mMigrantCount = migrantCount;
+    }
+
+    /**
+     * Checks if the migration should happen in the generation.
+     *
+     * @param generation generation number
+     * @return {@code true} each {@code interval} generations
+     */
+    boolean isMigrationGeneration(final int generation) {
+        return generation > 0 && generation % mInterval == 0;
+    }
+
+    int getMigrantCount() {
+        return mMigrantCount;
+    }
+
+    /**
+     * Checks if the neighbour already took all the migrants sent before, so the outbound queue never grows when
+     * the neighbour is slower.
+     *
+     * @return {@code true} if new migrants can be sent
+     */
+    boolean canEmigrate() {
+        return mOutbound.isEmpty();
+    }
+
+    /**
+     * Sends the individual to the neighbour island. The individual must not be changed afterwards.
+     *
+     * @param migrant individual
+     */
+    void emigrate(@NotNull final Matrix migrant) {
+        mOutbound.offer(migrant);
+    }
+
+    /**
+     * Takes next individual sent to this island.
+     *
+     * @return individual or {@code null} if there is none
+     */
+    Matrix immigrate() {
+        return mInbound.poll();
+    }
+
+    /**
+     * Stops all the islands.
+     */
+    void stop() {
+        mStopped.set(true);
+    }
+
+    boolean isStopped() {
+        return mStopped.get();
+    }
+}
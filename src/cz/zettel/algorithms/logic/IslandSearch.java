@@ -0,0 +1,117 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Island model of the genetic algorithm. Each island is a {@link GeneticSearch} with its own population running in its
+ * own thread. The islands are connected into a ring and every {@code migrationInterval} generations each island sends
+ * copies of its best individuals to the next one, where they replace the worst individuals.
+ * All the islands stop as soon as any of them finds the solution.
+ */
+public class IslandSearch extends AbstractSearch {
+    private static final Logger log = LoggerFactory.getLogger(IslandSearch.class.getName());
+
+    private final int mIslandCount;
+    private final int mPopulationSize;
+    private final float mElitismRatio;
+    private final int mMigrationInterval;
+    private final int mMigrantCount;
+
+    /**
+     * Constructor.
+     *
+     * @param initialMatrix
+     * @param islandCount       Number of islands, each island runs in its own thread
+     * @param populationSize    Size of population of each island
+     * @param elitismRatio      Elitism Ratio
+     * @param migrationInterval Number of generations between two migrations
+     * @param migrantCount      Number of individuals sent to the next island in one migration
+     */
+    public IslandSearch(@NotNull final Matrix initialMatrix,
+                        @NotNull final int islandCount,
+                        @NotNull final int populationSize,
+                        @NotNull final float elitismRatio,
+                        @NotNull final int migrationInterval,
+                        @NotNull final int migrantCount) {
+        super(initialMatrix);
+        mIslandCount = islandCount;
+        mPopulationSize = populationSize;
+        mElitismRatio = elitismRatio;
+        mMigrationInterval = migrationInterval;
+        mMigrantCount = migrantCount;
+        solve(initialMatrix);
+    }
+
+    @Override
+    void calculateMatrix() {
+        mSolvedMatrix = null;
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final AtomicReferenceArray<GeneticSearch> islands = new AtomicReferenceArray<>(mIslandCount);
+        final List<Queue<Matrix>> queues = new ArrayList<>();
+        final List<Callable<GeneticSearch>> callables = new ArrayList<>();
+        // the islands share the deadline of this search
+        final SolveBudget budget = getRemainingBudget();
+        for (int i = 0; i < mIslandCount; i++) {
+            queues.add(new ConcurrentLinkedQueue<Matrix>());
+        }
+        for (int i = 0; i < mIslandCount; i++) {
+            final int island = i;
+            final IslandMigration migration = new IslandMigration(queues.get(i), queues.get((i + 1) % mIslandCount),
+                    stopped, mMigrationInterval, mMigrantCount);
+            callables.add(new Callable<GeneticSearch>() {
+                @Override
+                public GeneticSearch call() throws Exception {
+                    log.info("Starting island {} in thread: {}", island, Thread.currentThread().getName());
+                    GeneticSearch geneticSearch = new GeneticSearch.Builder(mInitialMatrix)
+                            .populationSize(mPopulationSize)
+                            .elitismRatio(mElitismRatio)
+                            .migration(migration)
+                            .buildSolver();
+                    geneticSearch.solve(mInitialMatrix, budget);
+                    islands.set(island, geneticSearch);
+                    return geneticSearch;
+                }
+            });
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(mIslandCount);
+        try {
+            executorService.invokeAll(callables);
+        } catch (InterruptedException e) {
+            log.info("Interrupted.");
+            mStopStatus = SolveStatus.INTERRUPTED;
+            stopped.set(true);
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // take the best result of the finished islands
+        for (int i = 0; i < mIslandCount; i++) {
+            final GeneticSearch island = islands.get(i);
+            if (island != null && (mSolvedMatrix == null
+                    || island.getCalculatedMatrix().getTotalError() < mSolvedMatrix.getTotalError())) {
+                mSolvedMatrix = island.getCalculatedMatrix();
+            }
+            if (island != null && island.getStatus() == SolveStatus.BUDGET_EXHAUSTED && mStopStatus == null) {
+                mStopStatus = SolveStatus.BUDGET_EXHAUSTED;
+            }
+        }
+        if (mSolvedMatrix == null) {
+            mSolvedMatrix = new Matrix(mInitialMatrix);
+        }
+    }
+}
@@ -27,4 +27,11 @@ public interface LogicComparable {
      */
     @NotNull
     Long getElapsedTime();
+
+    /**
+     * Returns the outcome of the search: verified solution, no solution, or the best board found before the search
+     * was stopped. The error of the calculated matrix is given by {@link Matrix#getTotalError()}.
+     * @return
+     */
+    SolveStatus getStatus();
 }
@@ -0,0 +1,220 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.CandidateMasks;
+import cz.zettel.algorithms.entity.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a back-tracking search with the minimum remaining values heuristic. Instead of walking the cells
+ * in fixed order, it always fills the empty cell with the fewest candidates left, ties are broken by the highest number
+ * of empty cells in the same row, column and square (degree). A cell without any candidate is detected immediately,
+ * so the search backtracks much earlier than {@link FullSearch} and its worst case does not depend on the order
+ * of the cells and values.
+ * <p>
+ * Each choice is recorded on an explicit undo stack, together with the candidates which were not tried yet.
+ * When a cell has no candidate left, the choices are undone from the top of the stack until one with untried candidate
+ * is found. The search stops when the thread is interrupted, the calculated matrix is left unfinished then.
+ */
+public class MrvSearch extends AbstractSearch {
+    private static final Logger log = LoggerFactory.getLogger(MrvSearch.class.getName());
+    private static final int NO_CELL = -1;
+
+    /**
+     * Undo stack of the cells filled by the search and their candidates not tried yet.
+     */
+    private final int[] mCellStack = new int[mCellsCount];
+    private final long[] mRemainingStack = new long[mCellsCount];
+    private int mDepth;
+    private CandidateMasks mCandidateMasks;
+
+    public MrvSearch(@NotNull final Matrix initialMatrix) {
+        super(initialMatrix);
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param initialMatrix
+     * @param presolve      {@code true} to reduce the matrix by the {@link Presolver} first
+     */
+    public MrvSearch(@NotNull final Matrix initialMatrix, final boolean presolve) {
+        super(initialMatrix);
+        mPresolve = presolve;
+        solve(initialMatrix);
+    }
+
+    /**
+     * Constructor of a reusable search, the matrices are solved by {@link #solve(Matrix)}.
+     *
+     * @param length   Length of the matrices to be solved
+     * @param presolve {@code true} to reduce each matrix by the {@link Presolver} first
+     */
+    public MrvSearch(final int length, final boolean presolve) {
+        super(length);
+        mPresolve = presolve;
+    }
+
+    @Override
+    int getDeadlineCheckInterval() {
+        return BACKTRACKING_DEADLINE_CHECK_INTERVAL;
+    }
+
+    @Override
+    void calculateMatrix() {
+        if (isSolvedByPresolver()) {
+            return;
+        }
+        resetSolvedMatrix();
+        // the candidate masks check only the placed values, so conflicting initial values have to be found first
+        if (hasConflictingInitialValues()) {
+            log.info("Matrix has no solution, initial values are in conflict.");
+            return;
+        }
+        if (mCandidateMasks == null) {
+            mCandidateMasks = new CandidateMasks(mSolvedMatrix);
+        } else {
+            mCandidateMasks.reset();
+        }
+        mDepth = 0;
+
+        int cell;
+        long candidates;
+        while (true) {
+            if (isStopRequested()) {
+                log.info("Stopped: {}", mStopStatus);
+                break;
+            }
+            cell = selectCell();
+            if (cell == NO_CELL) {
+                // all the cells are filled
+                break;
+            }
+            candidates = getCellCandidates(cell);
+            if (candidates != 0) {
+                mCellStack[mDepth] = cell;
+                mRemainingStack[mDepth] = candidates;
+                mDepth++;
+                placeNextCandidate();
+            } else if (!backtrack()) {
+                log.info("Matrix has no solution.");
+                break;
+            }
+        }
+    }
+
+    /**
+     * Checks if any initial value is repeated in its row, column or square.
+     */
+    private boolean hasConflictingInitialValues() {
+        for (int i = 0; i < mMatrixLength; i++) {
+            for (int j = 0; j < mMatrixLength; j++) {
+                if (mStartMatrix.getConflictCount(i, j) > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the empty cell with the fewest candidates, ties are broken by the highest degree.
+     *
+     * @return cell index or {@link #NO_CELL} if all the cells are filled
+     */
+    private int selectCell() {
+        int bestCell = NO_CELL, bestCount = Integer.MAX_VALUE, bestDegree = -1;
+        int count, degree;
+        for (int cell = 0; cell < mCellsCount; cell++) {
+            if (mSolvedMatrix.getValue(cell / mMatrixLength, cell % mMatrixLength) != EMPTY_VALUE) {
+                continue;
+            }
+            count = Long.bitCount(getCellCandidates(cell));
+            if (count == 0) {
+                // dead end, no need to look further
+                return cell;
+            }
+            if (count < bestCount) {
+                bestCell = cell;
+                bestCount = count;
+                bestDegree = -1;
+            } else if (count == bestCount) {
+                if (bestDegree == -1) {
+                    bestDegree = getDegree(bestCell);
+                }
+                degree = getDegree(cell);
+                if (degree > bestDegree) {
+                    bestCell = cell;
+                    bestDegree = degree;
+                }
+            }
+        }
+        return bestCell;
+    }
+
+    /**
+     * Counts the empty cells in the same row, column and square as the cell.
+     */
+    private int getDegree(final int cell) {
+        final int row = cell / mMatrixLength;
+        final int column = cell % mMatrixLength;
+        final int squareRow = row / mSquareLength * mSquareLength;
+        final int squareColumn = column / mSquareLength * mSquareLength;
+        int degree = 0;
+        for (int k = 0; k < mMatrixLength; k++) {
+            if (k != column && mSolvedMatrix.getValue(row, k) == EMPTY_VALUE) degree++;
+            if (k != row && mSolvedMatrix.getValue(k, column) == EMPTY_VALUE) degree++;
+            final int i = squareRow + k / mSquareLength;
+            final int j = squareColumn + k % mSquareLength;
+            // cells of the square in the same row or column were already counted
+            if (i != row && j != column && mSolvedMatrix.getValue(i, j) == EMPTY_VALUE) degree++;
+        }
+        return degree;
+    }
+
+    private long getCellCandidates(final int cell) {
+        final int row = cell / mMatrixLength;
+        final int column = cell % mMatrixLength;
+        mCounters.addCheck();
+        return mCandidateMasks.getCandidates(row, column) & getCandidates(row, column);
+    }
+
+    /**
+     * Fills the cell on the top of the stack with its next untried candidate.
+     */
+    private void placeNextCandidate() {
+        final int top = mDepth - 1;
+        final int cell = mCellStack[top];
+        final long remaining = mRemainingStack[top];
+        final int value = Long.numberOfTrailingZeros(remaining) + 1;
+        mRemainingStack[top] = remaining & remaining - 1;
+        mCounters.addNode();
+        mSolvedMatrix.setValue(cell / mMatrixLength, cell % mMatrixLength, value);
+        mCandidateMasks.place(cell / mMatrixLength, cell % mMatrixLength, value);
+    }
+
+    /**
+     * Undoes the choices from the top of the stack until a cell with an untried candidate is found, and fills it.
+     *
+     * @return {@code false} if all the choices were undone, so the matrix has no solution
+     */
+    private boolean backtrack() {
+        int cell, row, column;
+        while (mDepth > 0) {
+            cell = mCellStack[mDepth - 1];
+            row = cell / mMatrixLength;
+            column = cell % mMatrixLength;
+            mCandidateMasks.remove(row, column, mSolvedMatrix.getValue(row, column));
+            mSolvedMatrix.deleteValue(row, column);
+            mCounters.addBacktrack();
+            if (mRemainingStack[mDepth - 1] != 0) {
+                placeNextCandidate();
+                return true;
+            }
+            mDepth--;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * This class races several search strategies on the same matrix and returns the first correct solution.
+ * All the strategies are started together in one shared {@link ExecutorServiceWrapper} pool, the ones which do not win
+ * are cancelled by interruption. Each strategy has its {@link StrategyStatistics}, so the mix of the strategies can be
+ * tuned according to which of them win and how fast.
+ */
+public class PortfolioSolver {
+    private static final Logger log = LoggerFactory.getLogger(PortfolioSolver.class.getName());
+
+    @NotNull
+    private final ExecutorServiceWrapper mExecutor;
+    /**
+     * Strategies by their names, each creates the search solving given matrix.
+     */
+    private final Map<String, Function<Matrix, LogicComparable>> mStrategies = new LinkedHashMap<>();
+    private final Map<String, StrategyStatistics> mStatistics = new LinkedHashMap<>();
+
+    /**
+     * Default constructor.
+     *
+     * @param nThreads Number of threads of the shared pool, it should not be lower than the number of strategies.
+     */
+    public PortfolioSolver(@NotNull final int nThreads) {
+        mExecutor = new ExecutorServiceWrapper(nThreads);
+    }
+
+    /**
+     * Adds a strategy to the portfolio. The search created by the strategy should check
+     * {@link Thread#isInterrupted()} to stop when it loses the race.
+     *
+     * @param name     unique name of the strategy used in the statistics
+     * @param strategy function creating the search which solves given matrix
+     * @return this portfolio
+     */
+    public synchronized PortfolioSolver addStrategy(@NotNull final String name,
+                                                    @NotNull final Function<Matrix, LogicComparable> strategy) {
+        if (mStrategies.containsKey(name)) {
+            throw new IllegalArgumentException("Strategy " + name + " already exists");
+        }
+        mStrategies.put(name, strategy);
+        mStatistics.put(name, new StrategyStatistics());
+        return this;
+    }
+
+    /**
+     * Starts all the strategies and waits for the first one which solves the matrix. The other ones are cancelled.
+     *
+     * @param matrix Matrix to be solved
+     * @return First solved result, or the best result if no strategy solved the matrix.
+     * @throws InterruptedException if interrupted while waiting, all the strategies are cancelled then
+     * @throws ExecutionException   if all the strategies failed
+     */
+    public synchronized LogicComparable solve(@NotNull final Matrix matrix) throws InterruptedException, ExecutionException {
+        final Map<LogicComparable, String> resultStrategies = Collections.synchronizedMap(new IdentityHashMap<LogicComparable, String>());
+        final Map<LogicComparable, Long> resultLatencies = Collections.synchronizedMap(new IdentityHashMap<LogicComparable, Long>());
+        for (final Map.Entry<String, Function<Matrix, LogicComparable>> strategy : mStrategies.entrySet()) {
+            mStatistics.get(strategy.getKey()).recordRace();
+            mExecutor.submitCallable(new Callable<LogicComparable>() {
+                @Override
+                public LogicComparable call() throws Exception {
+                    final long startTime = System.nanoTime();
+                    final LogicComparable result = strategy.getValue().apply(matrix);
+                    resultLatencies.put(result, System.nanoTime() - startTime);
+                    resultStrategies.put(result, strategy.getKey());
+                    return result;
+                }
+            });
+        }
+        final LogicComparable result = mExecutor.monitorThreadsAndGetResult();
+        if (result != null && result.getCalculatedMatrix().isSolved()) {
+            final String winner = resultStrategies.get(result);
+            mStatistics.get(winner).recordWin(resultLatencies.get(result));
+            log.debug("Strategy {} won in {}ms", winner, resultLatencies.get(result) / 1000000);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the statistics of all the strategies.
+     *
+     * @return unmodifiable map of the statistics by the strategy names
+     */
+    public synchronized Map<String, StrategyStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(mStatistics));
+    }
+
+    /**
+     * Stops the shared pool.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
@@ -0,0 +1,250 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.CandidateMasks;
+import cz.zettel.algorithms.entity.Matrix;
+import cz.zettel.algorithms.entity.MatrixConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class reduces the matrix by constraint propagation before any search. It repeats the following rules until
+ * none of them changes anything:
+ * <ul>
+ * <li>naked single - the cell has only one candidate left, so the candidate is filled in,</li>
+ * <li>hidden single - the value can be placed only into one cell of a row, column or square, so it is filled in,</li>
+ * <li>pointing pair - all the candidate cells of a value in a square lie in one row (or column), so the value is
+ * removed from the candidates of the other cells of that row (or column).</li>
+ * </ul>
+ * The result is the reduced matrix and the candidates of each cell, which are passed to the search.
+ * Easy matrices are solved completely by the propagation. Matrices of any size are supported.
+ */
+public class Presolver implements MatrixConstants {
+    private static final Logger log = LoggerFactory.getLogger(Presolver.class.getName());
+
+    @NotNull
+    private final Matrix mReducedMatrix;
+    /**
+     * Length of the matrix and of its squares.
+     */
+    private final int mLength, mSquareLength;
+    /**
+     * Candidates of each cell indexed row by row, bit {@code value - 1} is set for each candidate.
+     */
+    @NotNull
+    private final long[] mCandidates;
+    private boolean mContradiction;
+    private int mFilledCount;
+
+    /**
+     * Default constructor, the propagation is done here.
+     *
+     * @param matrix Matrix to be reduced, it is not changed.
+     */
+    public Presolver(@NotNull final Matrix matrix) {
+        mReducedMatrix = new Matrix(matrix);
+        mLength = matrix.getLength();
+        mSquareLength = matrix.getSquareLength();
+        mCandidates = new long[matrix.getCellsCount()];
+        final CandidateMasks candidateMasks = new CandidateMasks(matrix);
+        for (int i = 0; i < mLength; i++) {
+            for (int j = 0; j < mLength; j++) {
+                mCandidates[i * mLength + j] = matrix.getValue(i, j) == EMPTY_VALUE
+                        ? candidateMasks.getCandidates(i, j) : toBit(matrix.getValue(i, j));
+            }
+        }
+        boolean changed;
+        do {
+            changed = applyNakedSingles();
+            changed |= applyHiddenSingles();
+            changed |= applyPointingPairs();
+        } while (changed && !mContradiction);
+        log.debug("Presolver filled {} cells, contradiction = {}", mFilledCount, mContradiction);
+    }
+
+    /**
+     * @return Copy of the original matrix with the cells filled in by the propagation.
+     */
+    @NotNull
+    public Matrix getReducedMatrix() {
+        return mReducedMatrix;
+    }
+
+    /**
+     * Returns the candidates of the cell which were not eliminated by the propagation.
+     *
+     * @param row
+     * @param column
+     * @return Bitmask of the candidates, bit {@code value - 1} is set for each candidate.
+     */
+    @NotNull
+    public long getCandidates(final int row, final int column) {
+        return mCandidates[row * mLength + column];
+    }
+
+    /**
+     * @return {@code true} if some cell or some value of a unit has no candidate left, so the matrix has no solution.
+     */
+    @NotNull
+    public boolean isContradiction() {
+        return mContradiction;
+    }
+
+    /**
+     * @return Number of the cells filled in by the propagation.
+     */
+    @NotNull
+    public int getFilledCount() {
+        return mFilledCount;
+    }
+
+    /**
+     * Picks n-th candidate of the cell.
+     *
+     * @param candidates bitmask of the candidates, at least one bit must be set
+     * @param n          index of the candidate, lower than the number of the candidates
+     * @return value of the candidate
+     */
+    @NotNull
+    static int pickCandidate(long candidates, final int n) {
+        for (int skip = n; skip > 0; skip--) {
+            candidates &= candidates - 1;
+        }
+        return Long.numberOfTrailingZeros(candidates) + 1;
+    }
+
+    private boolean applyNakedSingles() {
+        boolean changed = false;
+        long candidates;
+        for (int i = 0; i < mLength; i++) {
+            for (int j = 0; j < mLength; j++) {
+                if (mReducedMatrix.getValue(i, j) == EMPTY_VALUE) {
+                    candidates = mCandidates[i * mLength + j];
+                    if (candidates == 0) {
+                        mContradiction = true;
+                        return false;
+                    }
+                    if (Long.bitCount(candidates) == 1) {
+                        place(i, j, Long.numberOfTrailingZeros(candidates) + 1);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean applyHiddenSingles() {
+        boolean changed = false;
+        long bit;
+        int count, cell, lastCell;
+        for (int unit = 0; unit < 3 * mLength; unit++) {
+            for (int value = 1; value <= mLength; value++) {
+                bit = toBit(value);
+                count = 0;
+                lastCell = -1;
+                for (int k = 0; k < mLength; k++) {
+                    cell = getUnitCell(unit, k);
+                    if ((mCandidates[cell] & bit) != 0) {
+                        count++;
+                        lastCell = cell;
+                    }
+                }
+                if (count == 0) {
+                    mContradiction = true;
+                    return false;
+                }
+                if (count == 1 && mReducedMatrix.getValue(lastCell / mLength, lastCell % mLength) == EMPTY_VALUE) {
+                    place(lastCell / mLength, lastCell % mLength, value);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean applyPointingPairs() {
+        boolean changed = false;
+        long bit, rows, columns;
+        int cell, row, column;
+        for (int square = 0; square < mLength; square++) {
+            for (int value = 1; value <= mLength; value++) {
+                bit = toBit(value);
+                rows = 0;
+                columns = 0;
+                for (int k = 0; k < mLength; k++) {
+                    cell = getUnitCell(2 * mLength + square, k);
+                    if ((mCandidates[cell] & bit) != 0
+                            && mReducedMatrix.getValue(cell / mLength, cell % mLength) == EMPTY_VALUE) {
+                        rows |= 1L << cell / mLength;
+                        columns |= 1L << cell % mLength;
+                    }
+                }
+                if (Long.bitCount(rows) == 1) {
+                    row = Long.numberOfTrailingZeros(rows);
+                    for (int j = 0; j < mLength; j++) {
+                        changed |= eliminate(row, j, square, bit);
+                    }
+                }
+                if (Long.bitCount(columns) == 1) {
+                    column = Long.numberOfTrailingZeros(columns);
+                    for (int i = 0; i < mLength; i++) {
+                        changed |= eliminate(i, column, square, bit);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the candidate from the empty cell outside of the square.
+     *
+     * @return {@code true} if the candidate was removed
+     */
+    private boolean eliminate(final int row, final int column, final int square, final long bit) {
+        final int cell = row * mLength + column;
+        if (mReducedMatrix.getSquareIndex(row, column) == square || (mCandidates[cell] & bit) == 0
+                || mReducedMatrix.getValue(row, column) != EMPTY_VALUE) {
+            return false;
+        }
+        mCandidates[cell] &= ~bit;
+        return true;
+    }
+
+    /**
+     * Fills the value in and removes it from the candidates of all the cells in the same row, column and square.
+     */
+    private void place(final int row, final int column, final int value) {
+        final long bit = toBit(value);
+        final int square = mReducedMatrix.getSquareIndex(row, column);
+        for (int k = 0; k < mLength; k++) {
+            mCandidates[getUnitCell(row, k)] &= ~bit;
+            mCandidates[getUnitCell(mLength + column, k)] &= ~bit;
+            mCandidates[getUnitCell(2 * mLength + square, k)] &= ~bit;
+        }
+        mCandidates[row * mLength + column] = bit;
+        mReducedMatrix.setValue(row, column, value);
+        mFilledCount++;
+    }
+
+    /**
+     * Returns index of k-th cell of the unit. Units are the rows, then the columns and the squares, e.g. 0-8 are rows,
+     * 9-17 columns and 18-26 squares of the standard matrix.
+     */
+    private int getUnitCell(final int unit, final int k) {
+        if (unit < mLength) {
+            return unit * mLength + k;
+        } else if (unit < 2 * mLength) {
+            return k * mLength + unit - mLength;
+        } else {
+            final int square = unit - 2 * mLength;
+            return (square / mSquareLength * mSquareLength + k / mSquareLength) * mLength
+                    + square % mSquareLength * mSquareLength + k % mSquareLength;
+        }
+    }
+
+    private static long toBit(final int value) {
+        return 1L << (value - 1);
+    }
+}
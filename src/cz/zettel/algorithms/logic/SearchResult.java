@@ -0,0 +1,60 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+/**
+ * Result of a search which does not change when the search is reused for another matrix.
+ */
+public final class SearchResult implements LogicComparable {
+
+    @NotNull
+    private final Matrix mInitialMatrix;
+    @NotNull
+    private final Matrix mCalculatedMatrix;
+    @NotNull
+    private final Long mElapsedTime;
+    private final SolveStatus mStatus;
+
+    SearchResult(@NotNull final Matrix initialMatrix,
+                 @NotNull final Matrix calculatedMatrix,
+                 @NotNull final Long elapsedTime,
+                 final SolveStatus status) {
+        mInitialMatrix = initialMatrix;
+        mCalculatedMatrix = calculatedMatrix;
+        mElapsedTime = elapsedTime;
+        mStatus = status;
+    }
+
+    /**
+     * Copies the calculated matrix of the result, the initial matrix is kept as it is not changed by the search.
+     *
+     * @param result result of a search
+     * @return Copy of the result.
+     */
+    @NotNull
+    public static SearchResult copyOf(@NotNull final LogicComparable result) {
+        return new SearchResult(result.getInitialMatrix(), new Matrix(result.getCalculatedMatrix()),
+                result.getElapsedTime(), result.getStatus());
+    }
+
+    @Override
+    public Matrix getInitialMatrix() {
+        return mInitialMatrix;
+    }
+
+    @Override
+    public Matrix getCalculatedMatrix() {
+        return mCalculatedMatrix;
+    }
+
+    @Override
+    public Long getElapsedTime() {
+        return mElapsedTime;
+    }
+
+    @Override
+    public SolveStatus getStatus() {
+        return mStatus;
+    }
+}
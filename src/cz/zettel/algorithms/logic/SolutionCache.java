@@ -0,0 +1,136 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This class keeps the solutions of the recently solved matrices in front of the searches. The matrices are stored
+ * in their {@link CanonicalForm}, so a matrix which differs from a solved one only by the symmetries (the order
+ * of the rows, columns, bands and stacks, transposition or the values) is answered by mapping the stored solution back
+ * instead of being solved again.
+ * <p>
+ * The cache holds at most {@code capacity} solutions, the least recently used one is evicted when it is full.
+ * Only the solved matrices are stored. It can be shared by many threads, two threads missing the same matrix
+ * at the same time both solve it.
+ */
+public class SolutionCache {
+
+    @NotNull
+    private final Map<String, byte[]> mSolutions;
+    private final LongAdder mHits = new LongAdder();
+    private final LongAdder mMisses = new LongAdder();
+    private final LongAdder mEvictions = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Maximal number of the stored solutions
+     */
+    public SolutionCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        mSolutions = new LinkedHashMap<String, byte[]>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                if (size() > capacity) {
+                    mEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached solution of the matrix, or solves it by the strategy and stores the solution.
+     *
+     * @param matrix   Matrix to be solved
+     * @param strategy Function solving the matrix on a miss
+     * @return Cached solution, or the result of the strategy.
+     */
+    @NotNull
+    public LogicComparable solve(@NotNull final Matrix matrix,
+                                 @NotNull final Function<Matrix, LogicComparable> strategy) {
+        final long startTime = System.nanoTime();
+        final CanonicalForm canonicalForm = CanonicalForm.of(matrix);
+        final byte[] cells;
+        synchronized (mSolutions) {
+            cells = mSolutions.get(canonicalForm.getKey());
+        }
+        if (cells != null) {
+            mHits.increment();
+            return new SearchResult(matrix, canonicalForm.fromCanonical(cells),
+                    (System.nanoTime() - startTime) / 1000000, SolveStatus.SOLVED);
+        }
+        mMisses.increment();
+        final LogicComparable result = strategy.apply(matrix);
+        if (result.getStatus() == SolveStatus.SOLVED) {
+            final byte[] solution = canonicalForm.toCanonical(result.getCalculatedMatrix());
+            synchronized (mSolutions) {
+                mSolutions.put(canonicalForm.getKey(), solution);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wraps the strategy, so all the matrices it solves go through the cache.
+     *
+     * @param strategy Function solving the matrix on a miss
+     * @return Function returning the cached solutions.
+     */
+    @NotNull
+    public Function<Matrix, LogicComparable> wrap(@NotNull final Function<Matrix, LogicComparable> strategy) {
+        return new Function<Matrix, LogicComparable>() {
+            @Override
+            public LogicComparable apply(Matrix matrix) {
+                return solve(matrix, strategy);
+            }
+        };
+    }
+
+    public int size() {
+        synchronized (mSolutions) {
+            return mSolutions.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (mSolutions) {
+            mSolutions.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return mHits.sum();
+    }
+
+    public long getMissCount() {
+        return mMisses.sum();
+    }
+
+    public long getEvictionCount() {
+        return mEvictions.sum();
+    }
+
+    /**
+     * @return Ratio of the matrices answered from the cache, 0 if there was no lookup yet.
+     */
+    public double getHitRatio() {
+        final long hits = getHitCount();
+        final long lookups = hits + getMissCount();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size = %d, hits = %d (%.1f%%), misses = %d, evictions = %d",
+                size(), getHitCount(), getHitRatio() * 100, getMissCount(), getEvictionCount());
+    }
+}
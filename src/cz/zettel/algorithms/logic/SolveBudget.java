@@ -0,0 +1,69 @@
+package cz.zettel.algorithms.logic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and iteration limit of one solve, see {@link AbstractSearch#solve(cz.zettel.algorithms.entity.Matrix, SolveBudget)}.
+ * The time starts to run when the solve starts. An iteration is one step of the main loop of the search: a value
+ * placed or taken back by the backtracking searches, a generation of the genetic search and a temperature level
+ * of the annealing, so the iteration limits of different searches are not comparable.
+ * <p>
+ * The budget is immutable and can be shared by any number of solves.
+ */
+public final class SolveBudget {
+
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    public static final SolveBudget UNLIMITED = new SolveBudget(NO_LIMIT, NO_LIMIT);
+
+    private final long mTimeoutNanos;
+    private final long mIterationLimit;
+
+    private SolveBudget(final long timeoutNanos, final long iterationLimit) {
+        if (timeoutNanos < 0 || iterationLimit < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + timeoutNanos + "ns, "
+                    + iterationLimit + " iterations");
+        }
+        mTimeoutNanos = timeoutNanos;
+        mIterationLimit = iterationLimit;
+    }
+
+    public static SolveBudget ofMillis(final long millis) {
+        return new SolveBudget(TimeUnit.MILLISECONDS.toNanos(millis), NO_LIMIT);
+    }
+
+    public static SolveBudget ofIterations(final long iterations) {
+        return new SolveBudget(NO_LIMIT, iterations);
+    }
+
+    /**
+     * @param millis     Time limit in milliseconds
+     * @param iterations Iteration limit
+     * @return Budget exhausted by whichever limit is reached first.
+     */
+    public static SolveBudget of(final long millis, final long iterations) {
+        return new SolveBudget(TimeUnit.MILLISECONDS.toNanos(millis), iterations);
+    }
+
+    static SolveBudget ofNanos(final long nanos) {
+        return new SolveBudget(Math.max(0, nanos), NO_LIMIT);
+    }
+
+    public boolean hasTimeout() {
+        return mTimeoutNanos != NO_LIMIT;
+    }
+
+    public long getTimeoutNanos() {
+        return mTimeoutNanos;
+    }
+
+    public long getIterationLimit() {
+        return mIterationLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "SolveBudget{" + (hasTimeout() ? TimeUnit.NANOSECONDS.toMillis(mTimeoutNanos) + "ms" : "no timeout")
+                + ", " + (mIterationLimit == NO_LIMIT ? "no iteration limit" : mIterationLimit + " iterations") + "}";
+    }
+}
@@ -0,0 +1,23 @@
+package cz.zettel.algorithms.logic;
+
+/**
+ * Outcome of one solve, see {@link LogicComparable#getStatus()}.
+ */
+public enum SolveStatus {
+    /**
+     * The calculated matrix is a verified solution: it has no error and keeps all the values of the initial matrix.
+     */
+    SOLVED,
+    /**
+     * The search finished without a solution. For the backtracking searches it means the matrix has no solution.
+     */
+    UNSOLVABLE,
+    /**
+     * The search was stopped by its {@link SolveBudget}, the calculated matrix is the best board found so far.
+     */
+    BUDGET_EXHAUSTED,
+    /**
+     * The thread of the search was interrupted, the calculated matrix is the best board found so far.
+     */
+    INTERRUPTED
+}
@@ -0,0 +1,69 @@
+package cz.zettel.algorithms.logic;
+
+import com.sun.istack.internal.NotNull;
+import cz.zettel.algorithms.entity.Matrix;
+
+import java.util.function.IntFunction;
+
+/**
+ * This class keeps one reusable search for each thread, so a thread solving many matrices creates its search
+ * and the buffers of the search only once. A new search is created when the thread gets a matrix of another length.
+ * <p>
+ * The result of {@link #solve(Matrix)} is the search itself, it is overwritten by the next matrix solved
+ * by the same thread. Use {@link SearchResult#copyOf(LogicComparable)} to keep it longer.
+ */
+public class SolverPool {
+
+    @NotNull
+    private final IntFunction<AbstractSearch> mFactory;
+    private final ThreadLocal<AbstractSearch> mSolvers = new ThreadLocal<>();
+
+    /**
+     * Constructor.
+     *
+     * @param factory Function creating a reusable search for the matrices of given length,
+     *                e.g. {@code new FullSearch(length, true, false, 1)}
+     */
+    public SolverPool(@NotNull final IntFunction<AbstractSearch> factory) {
+        mFactory = factory;
+    }
+
+    /**
+     * Returns the search of the current thread.
+     *
+     * @param length Length of the matrices to be solved
+     * @return Reusable search.
+     */
+    @NotNull
+    public AbstractSearch getSolver(final int length) {
+        AbstractSearch solver = mSolvers.get();
+        if (solver == null || solver.getMatrixLength() != length) {
+            solver = mFactory.apply(length);
+            mSolvers.set(solver);
+        }
+        return solver;
+    }
+
+    /**
+     * Solves the matrix by the search of the current thread.
+     *
+     * @param matrix Matrix to be solved
+     * @return Result valid until the current thread solves another matrix.
+     */
+    @NotNull
+    public LogicComparable solve(@NotNull final Matrix matrix) {
+        return getSolver(matrix.getLength()).solve(matrix);
+    }
+
+    /**
+     * Solves the matrix within the budget by the search of the current thread.
+     *
+     * @param matrix Matrix to be solved
+     * @param budget Time and iteration limit of the solve
+     * @return Result valid until the current thread solves another matrix.
+     */
+    @NotNull
+    public LogicComparable solve(@NotNull final Matrix matrix, @NotNull final SolveBudget budget) {
+        return getSolver(matrix.getLength()).solve(matrix, budget);
+    }
+}
@@ -0,0 +1,71 @@
+package cz.zettel.algorithms.logic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects counters of one strategy of the {@link PortfolioSolver}.
+ * It counts in how many races the strategy took part and how many of them it won, and the latency of the wins.
+ */
+public class StrategyStatistics {
+
+    private final LongAdder mRaces = new LongAdder();
+    private final LongAdder mWins = new LongAdder();
+    private final LongAdder mTotalWinNanos = new LongAdder();
+    private final AtomicLong mMaxWinNanos = new AtomicLong();
+
+    void recordRace() {
+        mRaces.increment();
+    }
+
+    /**
+     * Records a won race.
+     *
+     * @param latencyNanos time the strategy needed to solve the matrix
+     */
+    void recordWin(final long latencyNanos) {
+        mWins.increment();
+        mTotalWinNanos.add(latencyNanos);
+        long max;
+        do {
+            max = mMaxWinNanos.get();
+        } while (latencyNanos > max && !mMaxWinNanos.compareAndSet(max, latencyNanos));
+    }
+
+    public long getRaces() {
+        return mRaces.sum();
+    }
+
+    public long getWins() {
+        return mWins.sum();
+    }
+
+    /**
+     * @return Ratio of won races, 0 if the strategy did not race yet.
+     */
+    public double getWinRatio() {
+        final long races = getRaces();
+        return races == 0 ? 0 : (double) getWins() / races;
+    }
+
+    /**
+     * @return Average time of the won races in milliseconds, 0 if the strategy did not win yet.
+     */
+    public double getAverageWinLatencyMillis() {
+        final long wins = getWins();
+        return wins == 0 ? 0 : mTotalWinNanos.sum() / 1e6 / wins;
+    }
+
+    /**
+     * @return The longest time of the won races in milliseconds.
+     */
+    public double getMaxWinLatencyMillis() {
+        return mMaxWinNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("races = %d, wins = %d (%.1f%%), average win latency = %.3fms, max win latency = %.3fms",
+                getRaces(), getWins(), getWinRatio() * 100, getAverageWinLatencyMillis(), getMaxWinLatencyMillis());
+    }
+}
@@ -0,0 +1,18 @@
+package cz.zettel.algorithms.metrics;
+
+import com.sun.istack.internal.NotNull;
+
+/**
+ * Listener of the generations of a genetic search, called by the thread running the search after each generation
+ * is ranked. The search computes the snapshot only when a listener is attached.
+ */
+public interface GenerationListener {
+
+    /**
+     * Receives the state of the generation. The snapshot is reused by the search for the next generation, so it has
+     * to be copied if it is needed after the call.
+     *
+     * @param snapshot State of the generation
+     */
+    void onGeneration(@NotNull GenerationSnapshot snapshot);
+}
@@ -0,0 +1,112 @@
+package cz.zettel.algorithms.metrics;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * This class records the snapshots of the generations into a ring buffer of primitive arrays, so recording does not
+ * create any objects and the memory stays constant. When the buffer is full, the oldest generations are overwritten.
+ * The recorded generations are written as CSV, e.g. to compare the convergence of the searches with different
+ * population sizes or elitism ratios. One recorder can be shared by several searches.
+ */
+public class GenerationRecorder implements GenerationListener {
+
+    private static final String CSV_HEADER = "generation,min_error,mean_error,max_error,diversity,stagnation,restarts,time_ns";
+
+    private final int mCapacity;
+    private final int[] mGenerations, mMinErrors, mMaxErrors, mStagnations, mRestartCounts;
+    private final double[] mMeanErrors, mDiversities;
+    private final long[] mNanos;
+    /**
+     * Number of all the recorded generations, including the overwritten ones.
+     */
+    private long mCount;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Number of the latest generations kept
+     */
+    public GenerationRecorder(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        mCapacity = capacity;
+        mGenerations = new int[capacity];
+        mMinErrors = new int[capacity];
+        mMaxErrors = new int[capacity];
+        mStagnations = new int[capacity];
+        mRestartCounts = new int[capacity];
+        mMeanErrors = new double[capacity];
+        mDiversities = new double[capacity];
+        mNanos = new long[capacity];
+    }
+
+    @Override
+    public synchronized void onGeneration(@NotNull final GenerationSnapshot snapshot) {
+        final int slot = (int) (mCount % mCapacity);
+        mGenerations[slot] = snapshot.getGeneration();
+        mMinErrors[slot] = snapshot.getMinError();
+        mMeanErrors[slot] = snapshot.getMeanError();
+        mMaxErrors[slot] = snapshot.getMaxError();
+        mDiversities[slot] = snapshot.getDiversity();
+        mStagnations[slot] = snapshot.getStagnation();
+        mRestartCounts[slot] = snapshot.getRestartCount();
+        mNanos[slot] = snapshot.getNanos();
+        mCount++;
+    }
+
+    /**
+     * @return Number of the generations kept in the buffer.
+     */
+    public synchronized int size() {
+        return (int) Math.min(mCount, mCapacity);
+    }
+
+    /**
+     * @return Number of all the recorded generations, including the overwritten ones.
+     */
+    public synchronized long getRecordedCount() {
+        return mCount;
+    }
+
+    public synchronized void clear() {
+        mCount = 0;
+    }
+
+    /**
+     * Writes the kept generations from the oldest one as CSV with a header line.
+     *
+     * @param writer Target of the CSV
+     * @throws IOException if writing fails
+     */
+    public synchronized void writeCsv(@NotNull final Writer writer) throws IOException {
+        writer.append(CSV_HEADER).append(System.lineSeparator());
+        int slot;
+        for (long i = Math.max(0, mCount - mCapacity); i < mCount; i++) {
+            slot = (int) (i % mCapacity);
+            writer.append(String.format(Locale.ROOT, "%d,%d,%.3f,%d,%.4f,%d,%d,%d", mGenerations[slot],
+                    mMinErrors[slot], mMeanErrors[slot], mMaxErrors[slot], mDiversities[slot], mStagnations[slot],
+                    mRestartCounts[slot], mNanos[slot])).append(System.lineSeparator());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the kept generations to a CSV file, see {@link #writeCsv(Writer)}.
+     *
+     * @param path Path of the file, it is overwritten
+     * @throws IOException if writing fails
+     */
+    public void writeCsv(@NotNull final Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            writeCsv(writer);
+        }
+    }
+}
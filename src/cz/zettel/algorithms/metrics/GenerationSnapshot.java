@@ -0,0 +1,81 @@
+package cz.zettel.algorithms.metrics;
+
+import java.util.Locale;
+
+/**
+ * State of one generation of a genetic search passed to the {@link GenerationListener}. The errors are the total errors
+ * of the individuals (0 is the solution), the diversity is the average share of the free cells in which a sample
+ * of the population differs from the best individual (0 means the population converged to copies of the best one).
+ */
+public class GenerationSnapshot {
+
+    private int mGeneration, mMinError, mMaxError, mStagnation, mRestartCount;
+    private double mMeanError, mDiversity;
+    private long mNanos;
+
+    /**
+     * Overwrites the snapshot by the state of the next generation.
+     *
+     * @param generation   Number of the generation
+     * @param minError     Error of the best individual
+     * @param meanError    Average error of the population
+     * @param maxError     Error of the worst individual
+     * @param diversity    Diversity of the population from 0 to 1
+     * @param stagnation   Number of the generations the best error has not changed
+     * @param restartCount Number of the restarts so far
+     * @param nanos        Time of the generation
+     */
+    public void set(final int generation, final int minError, final double meanError, final int maxError,
+                    final double diversity, final int stagnation, final int restartCount, final long nanos) {
+        mGeneration = generation;
+        mMinError = minError;
+        mMeanError = meanError;
+        mMaxError = maxError;
+        mDiversity = diversity;
+        mStagnation = stagnation;
+        mRestartCount = restartCount;
+        mNanos = nanos;
+    }
+
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    public int getMinError() {
+        return mMinError;
+    }
+
+    public double getMeanError() {
+        return mMeanError;
+    }
+
+    public int getMaxError() {
+        return mMaxError;
+    }
+
+    public double getDiversity() {
+        return mDiversity;
+    }
+
+    public int getStagnation() {
+        return mStagnation;
+    }
+
+    public int getRestartCount() {
+        return mRestartCount;
+    }
+
+    /**
+     * @return Time of the generation in nanoseconds.
+     */
+    public long getNanos() {
+        return mNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "generation = %d, error = %d/%.2f/%d, diversity = %.3f, stagnation = %d, "
+                        + "restarts = %d, time = %.3fms", mGeneration, mMinError, mMeanError, mMaxError, mDiversity,
+                mStagnation, mRestartCount, mNanos / 1e6);
+    }
+}
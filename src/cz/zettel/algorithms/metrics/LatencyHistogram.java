@@ -0,0 +1,133 @@
+package cz.zettel.algorithms.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class records latencies into a fixed set of buckets in the way of HdrHistogram: values below 64 have their own
+ * buckets, higher values are split into 32 buckets for each power of two. Every recorded value is therefore kept with
+ * relative precision about 3%, the memory is constant regardless of the number of recorded values and recording is
+ * lock-free, so it can be shared by many threads.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mTotalValue = new AtomicLong();
+    private final AtomicLong mMaxValue = new AtomicLong();
+
+    /**
+     * Records one value.
+     *
+     * @param value latency, negative values are recorded as 0
+     */
+    public void record(final long value) {
+        final long positiveValue = Math.max(value, 0);
+        mCounts.incrementAndGet(getBucketIndex(positiveValue));
+        mTotalCount.incrementAndGet();
+        mTotalValue.addAndGet(positiveValue);
+        long max;
+        do {
+            max = mMaxValue.get();
+        } while (positiveValue > max && !mMaxValue.compareAndSet(max, positiveValue));
+    }
+
+    /**
+     * Adds all the values recorded by another histogram.
+     *
+     * @param histogram histogram to be added
+     */
+    public void add(final LatencyHistogram histogram) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.addAndGet(i, histogram.mCounts.get(i));
+        }
+        mTotalCount.addAndGet(histogram.getCount());
+        mTotalValue.addAndGet(histogram.mTotalValue.get());
+        long max;
+        do {
+            max = mMaxValue.get();
+        } while (histogram.getMax() > max && !mMaxValue.compareAndSet(max, histogram.getMax()));
+    }
+
+    /**
+     * Clears all the recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mTotalValue.set(0);
+        mMaxValue.set(0);
+    }
+
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    public long getMax() {
+        return mMaxValue.get();
+    }
+
+    /**
+     * @return Average of the recorded values, 0 if nothing was recorded.
+     */
+    public double getMean() {
+        final long count = getCount();
+        return count == 0 ? 0 : (double) mTotalValue.get() / count;
+    }
+
+    /**
+     * Finds the value below which the percentage of the recorded values falls.
+     *
+     * @param percentile percentage from 0 to 100
+     * @return Value in the middle of the bucket containing the percentile, 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        final long requiredCount = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulativeCount += mCounts.get(i);
+            if (cumulativeCount >= requiredCount) {
+                return Math.min(getBucketMiddle(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private static int getBucketIndex(final long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long getBucketMiddle(final int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long lowestValue = (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+        return lowestValue + (1L << shift) / 2;
+    }
+
+    /**
+     * Formats the percentiles of the latencies recorded in nanoseconds.
+     *
+     * @return Text with the count, mean, median, 90th, 99th and 99.9th percentile and maximum in milliseconds.
+     */
+    public String toMillisString() {
+        return String.format("count = %d, mean = %.3fms, p50 = %.3fms, p90 = %.3fms, p99 = %.3fms, p99.9 = %.3fms, max = %.3fms",
+                getCount(), getMean() / 1e6, getValueAtPercentile(50) / 1e6, getValueAtPercentile(90) / 1e6,
+                getValueAtPercentile(99) / 1e6, getValueAtPercentile(99.9) / 1e6, getMax() / 1e6);
+    }
+}
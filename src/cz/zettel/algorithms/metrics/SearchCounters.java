@@ -0,0 +1,142 @@
+package cz.zettel.algorithms.metrics;
+
+import java.util.Arrays;
+
+/**
+ * This class counts the work done by one search while it solves one matrix. The backtracking searches count the nodes
+ * (values placed to the cells), the backtracks and the constraint checks, the stochastic searches count
+ * the generations, restarts and fitness evaluations and record the history of the best error.
+ * <p>
+ * The counters are plain fields updated only by the thread running the search, so counting costs a single increment
+ * and can be left on. They are reset at the start of each solve and added to the {@link SearchMetrics} at its end.
+ */
+public class SearchCounters {
+
+    private static final int INITIAL_HISTORY_LENGTH = 16;
+
+    private long mNodes, mBacktracks, mChecks, mGenerations, mRestarts, mEvaluations;
+    /**
+     * Generation and the best error of each improvement, stored in pairs.
+     */
+    private int[] mHistory = new int[2 * INITIAL_HISTORY_LENGTH];
+    private int mHistoryLength;
+
+    public void reset() {
+        mNodes = 0;
+        mBacktracks = 0;
+        mChecks = 0;
+        mGenerations = 0;
+        mRestarts = 0;
+        mEvaluations = 0;
+        mHistoryLength = 0;
+    }
+
+    public void addNode() {
+        mNodes++;
+    }
+
+    public void addBacktrack() {
+        mBacktracks++;
+    }
+
+    public void addCheck() {
+        mChecks++;
+    }
+
+    public void addChecks(final long checks) {
+        mChecks += checks;
+    }
+
+    public void addGenerations(final long generations) {
+        mGenerations += generations;
+    }
+
+    public void addRestarts(final long restarts) {
+        mRestarts += restarts;
+    }
+
+    public void addEvaluations(final long evaluations) {
+        mEvaluations += evaluations;
+    }
+
+    /**
+     * Records the change of the best error. The history grows only when the error changes, so it stays short
+     * even for long searches.
+     *
+     * @param generation Generation (or other step of the search) where the error changed
+     * @param error      The new best error
+     */
+    public void recordBestError(final int generation, final int error) {
+        if (mHistoryLength > 0 && mHistory[2 * mHistoryLength - 1] == error) {
+            return;
+        }
+        if (2 * mHistoryLength == mHistory.length) {
+            mHistory = Arrays.copyOf(mHistory, 2 * mHistory.length);
+        }
+        mHistory[2 * mHistoryLength] = generation;
+        mHistory[2 * mHistoryLength + 1] = error;
+        mHistoryLength++;
+    }
+
+    public long getNodeCount() {
+        return mNodes;
+    }
+
+    public long getBacktrackCount() {
+        return mBacktracks;
+    }
+
+    public long getCheckCount() {
+        return mChecks;
+    }
+
+    public long getGenerationCount() {
+        return mGenerations;
+    }
+
+    public long getRestartCount() {
+        return mRestarts;
+    }
+
+    public long getEvaluationCount() {
+        return mEvaluations;
+    }
+
+    /**
+     * @return Number of the changes of the best error recorded by {@link #recordBestError(int, int)}.
+     */
+    public int getBestErrorHistoryLength() {
+        return mHistoryLength;
+    }
+
+    /**
+     * @param index Index of the change from 0 to {@link #getBestErrorHistoryLength()} - 1
+     * @return Generation of the change.
+     */
+    public int getBestErrorGeneration(final int index) {
+        return mHistory[2 * index];
+    }
+
+    /**
+     * @param index Index of the change from 0 to {@link #getBestErrorHistoryLength()} - 1
+     * @return Best error after the change.
+     */
+    public int getBestError(final int index) {
+        return mHistory[2 * index + 1];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(String.format(
+                "nodes = %d, backtracks = %d, checks = %d, generations = %d, restarts = %d, evaluations = %d",
+                mNodes, mBacktracks, mChecks, mGenerations, mRestarts, mEvaluations));
+        if (mHistoryLength > 0) {
+            builder.append(", best error history = [");
+            for (int i = 0; i < mHistoryLength; i++) {
+                builder.append(i == 0 ? "" : ", ").append(getBestErrorGeneration(i)).append(':').append(getBestError(i));
+            }
+            builder.append(']');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package cz.zettel.algorithms.metrics;
+
+import com.sun.istack.internal.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This class sums the {@link SearchCounters} of all the solves of one kind of search and records the histogram
+ * of their latencies. There is one instance for each name (the searches use their class name), shared by all
+ * the threads and registered as {@link SearchMetricsMXBean} in the platform MBean server when it is created.
+ * <p>
+ * Each solve is recorded once at its end by a few additions to {@link LongAdder}s, so the metrics are always on.
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+    private static final Logger log = LoggerFactory.getLogger(SearchMetrics.class.getName());
+    private static final String OBJECT_NAME_PREFIX = "cz.zettel.algorithms:type=SearchMetrics,name=";
+
+    private static final ConcurrentMap<String, SearchMetrics> METRICS = new ConcurrentHashMap<>();
+
+    @NotNull
+    private final String mName;
+    private final LongAdder mSolves = new LongAdder();
+    private final LongAdder mSolved = new LongAdder();
+    private final LongAdder mNodes = new LongAdder();
+    private final LongAdder mBacktracks = new LongAdder();
+    private final LongAdder mChecks = new LongAdder();
+    private final LongAdder mGenerations = new LongAdder();
+    private final LongAdder mRestarts = new LongAdder();
+    private final LongAdder mEvaluations = new LongAdder();
+    /**
+     * Latencies of the solves in nanoseconds.
+     */
+    private final LatencyHistogram mLatencies = new LatencyHistogram();
+
+    private SearchMetrics(@NotNull final String name) {
+        mName = name;
+    }
+
+    /**
+     * Returns the metrics of the name, they are created and registered in JMX by the first call.
+     *
+     * @param name Name of the search
+     * @return Shared metrics.
+     */
+    @NotNull
+    public static SearchMetrics get(@NotNull final String name) {
+        final SearchMetrics metrics = METRICS.get(name);
+        return metrics != null ? metrics : METRICS.computeIfAbsent(name, new Function<String, SearchMetrics>() {
+            @Override
+            public SearchMetrics apply(String name) {
+                final SearchMetrics metrics = new SearchMetrics(name);
+                metrics.register();
+                return metrics;
+            }
+        });
+    }
+
+    /**
+     * @return Metrics of all the searches which solved some matrix.
+     */
+    @NotNull
+    public static Collection<SearchMetrics> getAll() {
+        return Collections.unmodifiableCollection(METRICS.values());
+    }
+
+    /**
+     * Adds the counters of one solve.
+     *
+     * @param counters     Counters of the solve
+     * @param latencyNanos Time of the solve
+     * @param solved       {@code true} if the matrix was solved
+     */
+    public void record(@NotNull final SearchCounters counters, final long latencyNanos, final boolean solved) {
+        mSolves.increment();
+        if (solved) {
+            mSolved.increment();
+        }
+        mNodes.add(counters.getNodeCount());
+        mBacktracks.add(counters.getBacktrackCount());
+        mChecks.add(counters.getCheckCount());
+        mGenerations.add(counters.getGenerationCount());
+        mRestarts.add(counters.getRestartCount());
+        mEvaluations.add(counters.getEvaluationCount());
+        mLatencies.record(latencyNanos);
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public long getSolveCount() {
+        return mSolves.sum();
+    }
+
+    @Override
+    public long getSolvedCount() {
+        return mSolved.sum();
+    }
+
+    @Override
+    public long getNodeCount() {
+        return mNodes.sum();
+    }
+
+    @Override
+    public long getBacktrackCount() {
+        return mBacktracks.sum();
+    }
+
+    @Override
+    public long getCheckCount() {
+        return mChecks.sum();
+    }
+
+    @Override
+    public long getGenerationCount() {
+        return mGenerations.sum();
+    }
+
+    @Override
+    public long getRestartCount() {
+        return mRestarts.sum();
+    }
+
+    @Override
+    public long getEvaluationCount() {
+        return mEvaluations.sum();
+    }
+
+    @Override
+    public double getMeanLatency() {
+        return mLatencies.getMean() / 1e6;
+    }
+
+    @Override
+    public double getMedianLatency() {
+        return mLatencies.getValueAtPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getP99Latency() {
+        return mLatencies.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getMaxLatency() {
+        return mLatencies.getMax() / 1e6;
+    }
+
+    /**
+     * @return Histogram of the latencies in nanoseconds.
+     */
+    @NotNull
+    public LatencyHistogram getLatencies() {
+        return mLatencies;
+    }
+
+    @Override
+    public void reset() {
+        mSolves.reset();
+        mSolved.reset();
+        mNodes.reset();
+        mBacktracks.reset();
+        mChecks.reset();
+        mGenerations.reset();
+        mRestarts.reset();
+        mEvaluations.reset();
+        mLatencies.reset();
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME_PREFIX + mName));
+        } catch (JMException | SecurityException e) {
+            log.warn("Metrics of {} not registered in JMX: {}", mName, e.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: solves = %d, solved = %d, nodes = %d, backtracks = %d, checks = %d, "
+                        + "generations = %d, restarts = %d, evaluations = %d, latency: %s",
+                mName, getSolveCount(), getSolvedCount(), getNodeCount(), getBacktrackCount(), getCheckCount(),
+                getGenerationCount(), getRestartCount(), getEvaluationCount(), mLatencies.toMillisString());
+    }
+}
@@ -0,0 +1,39 @@
+package cz.zettel.algorithms.metrics;
+
+/**
+ * Management interface of the {@link SearchMetrics} exported through JMX, e.g. to JConsole or VisualVM under
+ * {@code cz.zettel.algorithms:type=SearchMetrics}. The latencies are in milliseconds.
+ */
+public interface SearchMetricsMXBean {
+
+    String getName();
+
+    long getSolveCount();
+
+    long getSolvedCount();
+
+    long getNodeCount();
+
+    long getBacktrackCount();
+
+    long getCheckCount();
+
+    long getGenerationCount();
+
+    long getRestartCount();
+
+    long getEvaluationCount();
+
+    double getMeanLatency();
+
+    double getMedianLatency();
+
+    double getP99Latency();
+
+    double getMaxLatency();
+
+    /**
+     * Clears all the counters and latencies.
+     */
+    void reset();
+}